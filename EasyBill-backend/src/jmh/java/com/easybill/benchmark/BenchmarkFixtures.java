@@ -0,0 +1,248 @@
+package com.easybill.benchmark;
+
+import com.easybill.entity.Account;
+import com.easybill.entity.Category;
+import com.easybill.entity.Transaction;
+import com.easybill.entity.TransactionStatus;
+import com.easybill.entity.TransactionType;
+import com.easybill.entity.User;
+import com.easybill.repository.StatsTimeSeriesRepository;
+import com.easybill.repository.TransactionRepository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 基准测试数据：真实格式的银行短信、AI 返回内容，以及按固定种子生成的大批量交易和统计行
+ */
+public final class BenchmarkFixtures {
+
+    // 固定种子，每次运行的数据相同，结果可比较
+    private static final long SEED = 20240101L;
+
+    public static final List<String> BANK_SMS = List.of(
+            "【招商银行】您账户1234于10月15日12:30在美团外卖快捷支付消费人民币35.80元，余额4,567.89元。",
+            "【工商银行】您尾号5678卡10月15日09:12工资收入(代发工资)12,000.00元，余额15,234.56元。【工商银行】",
+            "【建设银行】您尾号9012的储蓄卡10月14日20:45支付宝-星巴克咖啡消费68.00元，活期余额3,210.00元。",
+            "【中国银行】您的借记卡账户3456，于10月14日18:03网上支付交易人民币199.00元，交易后余额8,888.88元。",
+            "【农业银行】尊敬的客户，您尾号7890账户10月13日11:22完成财付通-滴滴出行交易人民币-25.50，余额1,024.00。",
+            "【交通银行】您尾号2468的卡于10/13 08:15在北京地铁消费4.00元，可用余额6,543.21元。",
+            "【平安银行】您尾号1357的账户10月12日16:08收到转账人民币500.00元，付款方张三，当前余额2,345.67元。",
+            "【浦发银行】您尾号8642信用卡10月12日19:40在盒马鲜生消费人民币156.30元，本期账单未还金额3,456.78元。"
+    );
+
+    public static final List<String> SMS_SENDERS = List.of(
+            "95555", "95588", "95533", "95566", "95599", "95559", "95511", "95528"
+    );
+
+    // AI 返回内容：有的包在 markdown 代码块中，有的带多余空白
+    public static final List<String> LLM_RESPONSES = List.of(
+            """
+            ```json
+            {
+              "type": "EXPENSE",
+              "amount": 35.80,
+              "merchant": "美团外卖",
+              "cardLastFour": "1234",
+              "transactionTime": "2024-10-15T12:30:00",
+              "categoryHint": "餐饮"
+            }
+            ```""",
+            "{\"type\":\"INCOME\",\"amount\":12000.00,\"merchant\":\"代发工资\",\"cardLastFour\":\"5678\","
+                    + "\"transactionTime\":\"2024-10-15T09:12:00\",\"categoryHint\":\"工资\"}",
+            """
+            ```
+            {"type": "EXPENSE", "amount": 68.00, "merchant": "支付宝-星巴克咖啡", "cardLastFour": "9012",
+             "transactionTime": "2024-10-14T20:45:00", "categoryHint": "餐饮"}
+            ```
+            """,
+            """
+
+              {"type": "EXPENSE", "amount": 199.00, "merchant": "网上支付", "cardLastFour": "3456",
+               "transactionTime": "2024-10-14T18:03:00", "categoryHint": null}
+            """
+    );
+
+    // 与短信一一对应的解析结果（金额、商户、尾号）
+    public static final List<String> PARSED_MERCHANTS = List.of(
+            "美团外卖", "代发工资", "支付宝-星巴克咖啡", "网上支付", "财付通-滴滴出行", "北京地铁", "张三", "盒马鲜生"
+    );
+
+    public static final List<BigDecimal> PARSED_AMOUNTS = List.of(
+            new BigDecimal("35.80"), new BigDecimal("12000.00"), new BigDecimal("68.00"), new BigDecimal("199.00"),
+            new BigDecimal("25.50"), new BigDecimal("4.00"), new BigDecimal("500.00"), new BigDecimal("156.30")
+    );
+
+    public static final List<String> PARSED_CARDS = List.of(
+            "1234", "5678", "9012", "3456", "7890", "2468", "1357", "8642"
+    );
+
+    private static final String[] CATEGORY_NAMES = {
+            "餐饮", "交通", "购物", "居住", "通讯", "医疗", "教育", "娱乐", "旅行", "人情",
+            "工资", "奖金", "理财收益", "报销", "其他"
+    };
+
+    private static final String[] MERCHANTS = {
+            "美团外卖", "饿了么", "星巴克", "瑞幸咖啡", "滴滴出行", "北京地铁", "京东商城", "淘宝", "拼多多", "盒马鲜生",
+            "中国移动", "国家电网", "万达影城", "携程旅行", "12306", "肯德基", "麦当劳", "全家便利店", "华联超市", "代发工资"
+    };
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * 生成一个用户的交易列表，分类和账户从固定集合中选取，约 1/5 未分类
+     */
+    public static List<Transaction> transactions(int count) {
+        Random random = new Random(SEED);
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("benchmark");
+
+        List<Category> categories = new ArrayList<>();
+        for (int i = 0; i < CATEGORY_NAMES.length; i++) {
+            Category category = new Category();
+            category.setId((long) i + 1);
+            category.setName(CATEGORY_NAMES[i]);
+            category.setType(i >= 10 ? "INCOME" : "EXPENSE");
+            categories.add(category);
+        }
+
+        List<Account> accounts = new ArrayList<>();
+        String[] accountNames = {"招商银行储蓄卡", "工商银行工资卡", "浦发银行信用卡", "支付宝", "微信钱包"};
+        for (int i = 0; i < accountNames.length; i++) {
+            Account account = new Account();
+            account.setId((long) i + 1);
+            account.setUserId(user.getId());
+            account.setAccountName(accountNames[i]);
+            account.setLastFourDigits(String.format("%04d", random.nextInt(10000)));
+            accounts.add(account);
+        }
+
+        LocalDateTime base = LocalDateTime.of(2024, 10, 15, 12, 0);
+        List<Transaction> transactions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            boolean income = random.nextInt(10) == 0;
+            Transaction transaction = new Transaction();
+            transaction.setId((long) i + 1);
+            transaction.setUser(user);
+            transaction.setType(income ? TransactionType.INCOME : TransactionType.EXPENSE);
+            transaction.setAmount(randomAmount(random, income));
+            transaction.setMerchant(MERCHANTS[random.nextInt(MERCHANTS.length)]);
+            transaction.setTransactionTime(base.minusMinutes(i * 37L));
+            transaction.setCategory(random.nextInt(5) == 0 ? null : categories.get(random.nextInt(categories.size())));
+            transaction.setAccount(accounts.get(random.nextInt(accounts.size())));
+            transaction.setStatus(random.nextInt(4) == 0 ? TransactionStatus.PENDING : TransactionStatus.CONFIRMED);
+            transaction.setRemark(random.nextInt(3) == 0 ? "短信自动记账" : null);
+            transaction.setRawLogId((long) i + 1);
+            transaction.setCreatedAt(transaction.getTransactionTime());
+            transaction.setUpdatedAt(transaction.getTransactionTime());
+            transactions.add(transaction);
+        }
+        return transactions;
+    }
+
+    /**
+     * 按收支类型的汇总行（数据库 GROUP BY type 的结果）
+     */
+    public static List<TransactionRepository.TypeTotal> typeTotals() {
+        return List.of(
+                new TypeTotalRow(TransactionType.INCOME, new BigDecimal("186432.50"), 96L),
+                new TypeTotalRow(TransactionType.EXPENSE, new BigDecimal("123875.36"), 4210L)
+        );
+    }
+
+    /**
+     * 按分类和收支类型的汇总行，每个分类两种类型各一行
+     */
+    public static List<TransactionRepository.CategoryTotal> categoryTotals(int categories) {
+        Random random = new Random(SEED);
+        List<TransactionRepository.CategoryTotal> rows = new ArrayList<>(categories * 2);
+        for (int i = 0; i < categories; i++) {
+            String name = CATEGORY_NAMES[i % CATEGORY_NAMES.length] + (i >= CATEGORY_NAMES.length ? "-" + i : "");
+            for (TransactionType type : TransactionType.values()) {
+                rows.add(new CategoryTotalRow((long) i + 1, name, type,
+                        randomAmount(random, type == TransactionType.INCOME).multiply(BigDecimal.valueOf(20)),
+                        1L + random.nextInt(200)));
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * 按日分桶、按分类拆分的趋势行：days 天 × groups 个分类 × 两种收支类型
+     */
+    public static List<StatsTimeSeriesRepository.BucketRow> dailyBucketRows(LocalDate start, int days, int groups) {
+        Random random = new Random(SEED);
+        List<StatsTimeSeriesRepository.BucketRow> rows = new ArrayList<>(days * groups * 2);
+        for (int d = 0; d < days; d++) {
+            LocalDate period = start.plusDays(d);
+            for (int g = 0; g < groups; g++) {
+                String name = CATEGORY_NAMES[g % CATEGORY_NAMES.length];
+                for (TransactionType type : TransactionType.values()) {
+                    rows.add(new StatsTimeSeriesRepository.BucketRow(period, (long) g + 1, name, type,
+                            randomAmount(random, type == TransactionType.INCOME), 1 + random.nextInt(5)));
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static BigDecimal randomAmount(Random random, boolean income) {
+        long cents = income ? 50_000 + random.nextInt(2_000_000) : 100 + random.nextInt(50_000);
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    public record TypeTotalRow(TransactionType type, BigDecimal totalAmount, Long transactionCount)
+            implements TransactionRepository.TypeTotal {
+
+        @Override
+        public TransactionType getType() {
+            return type;
+        }
+
+        @Override
+        public BigDecimal getTotalAmount() {
+            return totalAmount;
+        }
+
+        @Override
+        public Long getTransactionCount() {
+            return transactionCount;
+        }
+    }
+
+    public record CategoryTotalRow(Long categoryId, String categoryName, TransactionType type,
+                                   BigDecimal totalAmount, Long transactionCount)
+            implements TransactionRepository.CategoryTotal {
+
+        @Override
+        public Long getCategoryId() {
+            return categoryId;
+        }
+
+        @Override
+        public String getCategoryName() {
+            return categoryName;
+        }
+
+        @Override
+        public TransactionType getType() {
+            return type;
+        }
+
+        @Override
+        public BigDecimal getTotalAmount() {
+            return totalAmount;
+        }
+
+        @Override
+        public Long getTransactionCount() {
+            return transactionCount;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.easybill.repository;
+
+import com.easybill.entity.RawSmsLog;
+import com.easybill.entity.Transaction;
+import com.easybill.entity.TransactionStatus;
+import com.easybill.entity.TransactionType;
+import com.easybill.entity.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.Banner;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceTransactionManagerAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.JdbcTemplateAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 逐行 save 与 JDBC 批量写入的对比，结果为每秒写入（更新）的行数
+ * 主键为 IDENTITY 时 Hibernate 不会合并 INSERT，逐行 save 每行一次往返；批量仓库一次提交整批。
+ * 连接内嵌 H2（MySQL 模式），没有网络往返，也没有 rewriteBatchedStatements 的多行 INSERT 改写，
+ * 测得的差距是下限，连真实 MySQL 时批量写入的优势更大
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchWriteBenchmark {
+
+    // 每次调用写入的行数，与批量导入、延后解析恢复的单批规模相当
+    private static final int ROWS = 500;
+
+    private ConfigurableApplicationContext context;
+    private TransactionTemplate transactionTemplate;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionRepository transactionRepository;
+    private TransactionBatchRepository transactionBatchRepository;
+    private RawSmsLogRepository rawSmsLogRepository;
+    private RawSmsLogBatchRepository rawSmsLogBatchRepository;
+
+    private User user;
+    private List<RawSmsLog> logs;
+    private int round;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(BenchmarkConfig.class)
+                .web(WebApplicationType.NONE)
+                .bannerMode(Banner.Mode.OFF)
+                .run(
+                        // 不读取 application.properties，避免连到配置中的 MySQL
+                        "--spring.config.name=batch-write-benchmark",
+                        "--spring.datasource.url=jdbc:h2:mem:batch-write;MODE=MySQL;DB_CLOSE_DELAY=-1",
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        "--spring.jpa.properties.hibernate.jdbc.batch_size=50",
+                        "--spring.jpa.properties.hibernate.order_inserts=true",
+                        "--spring.jpa.properties.hibernate.order_updates=true",
+                        "--logging.level.root=WARN"
+                );
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        transactionRepository = context.getBean(TransactionRepository.class);
+        transactionBatchRepository = context.getBean(TransactionBatchRepository.class);
+        rawSmsLogRepository = context.getBean(RawSmsLogRepository.class);
+        rawSmsLogBatchRepository = context.getBean(RawSmsLogBatchRepository.class);
+
+        User newUser = new User();
+        newUser.setUsername("benchmark");
+        newUser.setPasswordHash("hash");
+        newUser.setApiKey("benchmark-api-key");
+        user = context.getBean(UserRepository.class).save(newUser);
+
+        logs = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            RawSmsLog smsLog = new RawSmsLog();
+            smsLog.setUserId(user.getId());
+            smsLog.setSender("95555");
+            smsLog.setFullContent("【招商银行】您账户1234于10月15日12:30在美团外卖快捷支付消费人民币" + (i + 1) + ".00元。");
+            smsLog.setParseStatus("DEFERRED");
+            logs.add(smsLog);
+        }
+        rawSmsLogBatchRepository.insertAll(logs);
+    }
+
+    /**
+     * 每轮开始前清空交易表，避免表越写越大影响后面的轮次
+     */
+    @Setup(Level.Iteration)
+    public void clearTransactions() {
+        jdbcTemplate.update("DELETE FROM transactions");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void insertSaveEach() {
+        List<Transaction> rows = newTransactions();
+        transactionTemplate.executeWithoutResult(status -> rows.forEach(transactionRepository::save));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void insertSaveAll() {
+        List<Transaction> rows = newTransactions();
+        transactionTemplate.executeWithoutResult(status -> transactionRepository.saveAll(rows));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public int[] insertAll() {
+        List<Transaction> rows = newTransactions();
+        return transactionTemplate.execute(status -> transactionBatchRepository.insertAll(rows));
+    }
+
+    /**
+     * 逐行 save 更新状态（批量改状态前 DeferredParseScheduler 的做法：游离实体先 SELECT 再 UPDATE）
+     */
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void updateStatusSaveEach() {
+        String status = nextStatus();
+        transactionTemplate.executeWithoutResult(tx -> logs.forEach(smsLog -> {
+            smsLog.setParseStatus(status);
+            rawSmsLogRepository.save(smsLog);
+        }));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void updateStatusAll() {
+        String status = nextStatus();
+        logs.forEach(smsLog -> smsLog.setParseStatus(status));
+        rawSmsLogBatchRepository.updateStatusAll(logs);
+    }
+
+    // 状态在两个值间交替，保证每次都真正修改
+    private String nextStatus() {
+        return (round++ & 1) == 0 ? "PENDING" : "DEFERRED";
+    }
+
+    private List<Transaction> newTransactions() {
+        LocalDateTime base = LocalDateTime.of(2024, 10, 15, 12, 0);
+        List<Transaction> rows = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            Transaction transaction = new Transaction();
+            transaction.setUser(user);
+            transaction.setType(TransactionType.EXPENSE);
+            transaction.setAmount(BigDecimal.valueOf(100 + i, 2));
+            transaction.setMerchant("美团外卖");
+            transaction.setTransactionTime(base.minusMinutes(i));
+            transaction.setStatus(TransactionStatus.PENDING);
+            rows.add(transaction);
+        }
+        return rows;
+    }
+
+    /**
+     * 只装配数据源、JPA 和两个批量仓库，不启动 Web、Redis 和 AI 相关组件
+     */
+    @SpringBootConfiguration
+    @ImportAutoConfiguration({
+            DataSourceAutoConfiguration.class,
+            DataSourceTransactionManagerAutoConfiguration.class,
+            HibernateJpaAutoConfiguration.class,
+            JdbcTemplateAutoConfiguration.class,
+            TransactionAutoConfiguration.class
+    })
+    @EntityScan(basePackageClasses = Transaction.class)
+    @EnableJpaRepositories(basePackageClasses = TransactionRepository.class)
+    @Import({TransactionBatchRepository.class, RawSmsLogBatchRepository.class})
+    public static class BenchmarkConfig {
+    }
+}
@@ -0,0 +1,62 @@
+package com.easybill.service;
+
+import com.easybill.benchmark.BenchmarkFixtures;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AI 返回内容的处理：去掉 markdown 代码块标记，再反序列化为 ParsedTransaction（不含模型调用）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AIParserServiceBenchmark {
+
+    private static final int RESPONSE_COUNT = 4;
+
+    private AIParserService aiParserService;
+    private List<String> responses;
+
+    @Setup
+    public void setUp() {
+        aiParserService = new AIParserService();
+        // 与 Spring Boot 自动配置的 ObjectMapper 设置一致
+        ReflectionTestUtils.setField(aiParserService, "objectMapper", Jackson2ObjectMapperBuilder.json().build());
+        responses = BenchmarkFixtures.LLM_RESPONSES;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RESPONSE_COUNT)
+    public void stripCodeFence(Blackhole blackhole) {
+        for (int i = 0; i < RESPONSE_COUNT; i++) {
+            blackhole.consume(AIParserService.stripCodeFence(responses.get(i)));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RESPONSE_COUNT)
+    public void readParsedTransaction(Blackhole blackhole) throws JsonProcessingException {
+        for (int i = 0; i < RESPONSE_COUNT; i++) {
+            blackhole.consume(aiParserService.readParsedTransaction(responses.get(i)));
+        }
+    }
+}
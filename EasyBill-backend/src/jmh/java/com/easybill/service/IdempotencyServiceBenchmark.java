@@ -0,0 +1,72 @@
+package com.easybill.service;
+
+import com.easybill.benchmark.BenchmarkFixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 幂等性键生成（每条短信解析成功后执行一次）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdempotencyServiceBenchmark {
+
+    private static final int SMS_COUNT = 8;
+
+    private IdempotencyService idempotencyService;
+    private List<String> sms;
+    private List<BigDecimal> amounts;
+    private List<String> merchants;
+    private List<String> cards;
+
+    @Setup
+    public void setUp() {
+        IdempotencyStore store = new IdempotencyStore() {
+            @Override
+            public String getName() {
+                return "noop";
+            }
+
+            @Override
+            public boolean putIfAbsent(String key) {
+                return true;
+            }
+
+            @Override
+            public boolean exists(String key) {
+                return false;
+            }
+        };
+        idempotencyService = new IdempotencyService(List.of(store), List.of("noop"), 30000, false);
+        sms = BenchmarkFixtures.BANK_SMS;
+        amounts = BenchmarkFixtures.PARSED_AMOUNTS;
+        merchants = BenchmarkFixtures.PARSED_MERCHANTS;
+        cards = BenchmarkFixtures.PARSED_CARDS;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SMS_COUNT)
+    public void generateKey(Blackhole blackhole) {
+        for (int i = 0; i < SMS_COUNT; i++) {
+            blackhole.consume(idempotencyService.generateKey(1L, cards.get(i), amounts.get(i), merchants.get(i), sms.get(i)));
+        }
+    }
+}
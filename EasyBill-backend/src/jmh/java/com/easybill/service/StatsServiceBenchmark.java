@@ -0,0 +1,75 @@
+package com.easybill.service;
+
+import com.easybill.benchmark.BenchmarkFixtures;
+import com.easybill.dto.CategoryStatsDTO;
+import com.easybill.dto.StatsSummaryDTO;
+import com.easybill.dto.TimeSeriesDTO;
+import com.easybill.entity.TransactionType;
+import com.easybill.repository.StatsTimeSeriesRepository;
+import com.easybill.repository.TransactionRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 统计接口在数据库聚合之后的内存计算：BigDecimal 累加、分类合并与占比、趋势分桶和补齐空桶
+ * 趋势数据为一年的日数据按分类拆分
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatsServiceBenchmark {
+
+    @Param({"15", "200"})
+    public int categories;
+
+    private List<TransactionRepository.TypeTotal> typeTotals;
+    private List<TransactionRepository.CategoryTotal> categoryTotals;
+    private List<StatsTimeSeriesRepository.BucketRow> bucketRows;
+    private LocalDate start;
+    private LocalDate end;
+
+    @Setup
+    public void setUp() {
+        typeTotals = BenchmarkFixtures.typeTotals();
+        categoryTotals = BenchmarkFixtures.categoryTotals(categories);
+        start = LocalDate.of(2024, 1, 1);
+        end = LocalDate.of(2024, 12, 31);
+        bucketRows = BenchmarkFixtures.dailyBucketRows(start, 366, categories);
+    }
+
+    @Benchmark
+    public StatsSummaryDTO summarize() {
+        return StatsService.summarize(typeTotals);
+    }
+
+    @Benchmark
+    public List<CategoryStatsDTO> mergeCategoryStats() {
+        return StatsService.mergeCategoryStats(typeTotals, TransactionType.EXPENSE, categoryTotals);
+    }
+
+    @Benchmark
+    public TimeSeriesDTO dailyTimeSeriesByCategory() {
+        return StatsService.buildTimeSeries(bucketRows, TimeSeriesDTO.Interval.DAY, TimeSeriesDTO.Split.CATEGORY, start, end);
+    }
+
+    @Benchmark
+    public TimeSeriesDTO weeklyTimeSeries() {
+        return StatsService.buildTimeSeries(bucketRows, TimeSeriesDTO.Interval.WEEK, TimeSeriesDTO.Split.NONE, start, end);
+    }
+}
@@ -0,0 +1,55 @@
+package com.easybill.service;
+
+import com.easybill.benchmark.BenchmarkFixtures;
+import com.easybill.dto.TransactionDTO;
+import com.easybill.entity.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 交易实体转 DTO（列表、游标分页和导出的每一行都会执行）
+ * 100 条对应一页列表，10000 条对应一次大批量导出
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransactionServiceBenchmark {
+
+    @Param({"100", "10000"})
+    public int size;
+
+    private TransactionService transactionService;
+    private List<Transaction> transactions;
+
+    @Setup
+    public void setUp() {
+        // convertToDTO 不访问仓库，依赖项留空
+        transactionService = new TransactionService(null, null, null, null, null);
+        transactions = BenchmarkFixtures.transactions(size);
+    }
+
+    @Benchmark
+    public List<TransactionDTO> convertToDTO() {
+        List<TransactionDTO> dtos = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            dtos.add(transactionService.convertToDTO(transaction));
+        }
+        return dtos;
+    }
+}
@@ -0,0 +1,62 @@
+package com.easybill.util;
+
+import com.easybill.config.JwtPrincipal;
+import com.easybill.service.JwtTokenService;
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JWT 签发和校验；authenticateCached 为 JwtTokenService 命中本地缓存时每个请求的开销
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtUtilBenchmark {
+
+    private JwtUtil jwtUtil;
+    private JwtTokenService jwtTokenService;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", "easybill_benchmark_secret_key_for_jwt_minimum_256_bits");
+        ReflectionTestUtils.setField(jwtUtil, "expiration", TimeUnit.DAYS.toMillis(7));
+        jwtUtil.init();
+        token = jwtUtil.generateToken("benchmark", 1L);
+
+        jwtTokenService = new JwtTokenService(jwtUtil, 10000, 300);
+        jwtTokenService.authenticate(token);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtUtil.generateToken("benchmark", 1L);
+    }
+
+    @Benchmark
+    public Claims parseClaims() {
+        return jwtUtil.parseClaims(token);
+    }
+
+    @Benchmark
+    public Optional<JwtPrincipal> authenticateCached() {
+        return jwtTokenService.authenticate(token);
+    }
+}
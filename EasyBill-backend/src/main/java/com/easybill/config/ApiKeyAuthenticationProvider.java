@@ -0,0 +1,30 @@
+package com.easybill.config;
+
+import com.easybill.service.ApiKeyAuthService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.Authentication;
+
+/**
+ * 校验 Webhook API Key（查询结果有本地缓存）
+ * 只用于 Webhook 过滤器链，不注册为 Bean，避免影响登录使用的全局 AuthenticationManager
+ */
+@RequiredArgsConstructor
+public class ApiKeyAuthenticationProvider implements AuthenticationProvider {
+
+    private final ApiKeyAuthService apiKeyAuthService;
+
+    @Override
+    public Authentication authenticate(Authentication authentication) {
+        String apiKey = (String) authentication.getCredentials();
+        return apiKeyAuthService.authenticate(apiKey)
+                .map(ApiKeyAuthenticationToken::authenticated)
+                .orElseThrow(() -> new BadCredentialsException("无效的 API Key"));
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return ApiKeyAuthenticationToken.class.isAssignableFrom(authentication);
+    }
+}
@@ -0,0 +1,46 @@
+package com.easybill.config;
+
+import com.easybill.entity.User;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+
+import java.util.List;
+
+/**
+ * Webhook API Key 认证凭证
+ * 认证前只携带 API Key，认证后 principal 为对应的用户
+ */
+public class ApiKeyAuthenticationToken extends AbstractAuthenticationToken {
+
+    private final String apiKey;
+    private final User user;
+
+    private ApiKeyAuthenticationToken(String apiKey, User user) {
+        super(List.of());
+        this.apiKey = apiKey;
+        this.user = user;
+        super.setAuthenticated(user != null);
+    }
+
+    public static ApiKeyAuthenticationToken unauthenticated(String apiKey) {
+        return new ApiKeyAuthenticationToken(apiKey, null);
+    }
+
+    public static ApiKeyAuthenticationToken authenticated(User user) {
+        return new ApiKeyAuthenticationToken(null, user);
+    }
+
+    @Override
+    public Object getCredentials() {
+        return apiKey;
+    }
+
+    @Override
+    public Object getPrincipal() {
+        return user;
+    }
+
+    @Override
+    public String getName() {
+        return user != null ? user.getUsername() : "";
+    }
+}
@@ -0,0 +1,135 @@
+package com.easybill.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class AsyncConfig {
+
+    @Autowired
+    private Environment environment;
+
+    @Value("${easybill.sms.async.concurrency:4}")
+    private int smsConcurrency;
+
+    @Value("${easybill.sms.async.queue-capacity:500}")
+    private int smsQueueCapacity;
+
+    @Value("${easybill.parser.batch.concurrency:2}")
+    private int batchConcurrency;
+
+    @Value("${easybill.import.concurrency:1}")
+    private int importConcurrency;
+
+    @Value("${easybill.import.queue-capacity:10}")
+    private int importQueueCapacity;
+
+    @Value("${easybill.events.dispatch-concurrency:2}")
+    private int eventDispatchConcurrency;
+
+    @Value("${easybill.events.queue-capacity:1000}")
+    private int eventQueueCapacity;
+
+    /**
+     * 短信解析工作线程池
+     * 线程数固定为并发上限，排队容量由 SmsIngestionService 的许可数控制；
+     * 虚拟线程模式下工作线程为虚拟线程，阻塞在 AI 调用上不占用平台线程，可调大并发上限
+     */
+    @Bean(name = "smsIngestionExecutor")
+    public ThreadPoolTaskExecutor smsIngestionExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(smsConcurrency);
+        executor.setMaxPoolSize(smsConcurrency);
+        executor.setQueueCapacity(smsQueueCapacity);
+        executor.setThreadNamePrefix("sms-worker-");
+        useVirtualThreads(executor, "sms-worker-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 批量解析请求线程池
+     * 线程满时由收集线程自己执行，收集自然放缓形成背压
+     */
+    @Bean(name = "parserBatchExecutor")
+    public ThreadPoolTaskExecutor parserBatchExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(batchConcurrency);
+        executor.setMaxPoolSize(batchConcurrency);
+        executor.setQueueCapacity(0);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setThreadNamePrefix("parser-batch-");
+        useVirtualThreads(executor, "parser-batch-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 账单导入线程池
+     * 导入任务以大批量写库为主，并发数宜小；队列满时由调用方返回 503
+     */
+    @Bean(name = "statementImportExecutor")
+    public ThreadPoolTaskExecutor statementImportExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(importConcurrency);
+        executor.setMaxPoolSize(importConcurrency);
+        executor.setQueueCapacity(importQueueCapacity);
+        executor.setThreadNamePrefix("statement-import-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 手动触发的失败短信重试线程池
+     * 单线程且不排队：同一时间只执行一轮，已有一轮在执行时拒绝新的请求
+     */
+    @Bean(name = "smsRetryExecutor")
+    public ThreadPoolTaskExecutor smsRetryExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("sms-retry-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 交易事件推送线程池
+     * 向 SSE 连接写事件可能被慢客户端阻塞，不在提交事务的线程上执行；队列满时丢弃事件
+     */
+    @Bean(name = "transactionEventExecutor")
+    public ThreadPoolTaskExecutor transactionEventExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(eventDispatchConcurrency);
+        executor.setMaxPoolSize(eventDispatchConcurrency);
+        executor.setQueueCapacity(eventQueueCapacity);
+        executor.setThreadNamePrefix("tx-events-");
+        useVirtualThreads(executor, "tx-events-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 开启虚拟线程模式时，线程池的工作线程改为虚拟线程（并发上限和队列容量不变）
+     */
+    private void useVirtualThreads(ThreadPoolTaskExecutor executor, String threadNamePrefix) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            executor.setThreadFactory(new VirtualThreadTaskExecutor(threadNamePrefix).getVirtualThreadFactory());
+        }
+    }
+}
@@ -1,27 +1,34 @@
 package com.easybill.config;
 
-import com.easybill.util.JwtUtil;
+import com.easybill.service.JwtTokenService;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.Set;
 
 @Component
 @RequiredArgsConstructor
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
-    private final JwtUtil jwtUtil;
-    private final UserDetailsService userDetailsService;
+    public static final String ROLE_ADMIN = "ROLE_ADMIN";
+
+    private final JwtTokenService jwtTokenService;
+
+    // 可调用运维接口（重新加载规则、清空缓存、全量重建等）的用户 ID
+    @Value("${easybill.admin.user-ids:}")
+    private Set<Long> adminUserIds;
 
     @Override
     protected void doFilterInternal(
@@ -31,8 +38,6 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     ) throws ServletException, IOException {
         
         final String authHeader = request.getHeader("Authorization");
-        final String jwt;
-        final String username;
 
         // 如果没有 Authorization header 或不是 Bearer token，跳过
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
@@ -40,31 +45,22 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             return;
         }
 
-        // 提取 JWT token
-        jwt = authHeader.substring(7);
-        
-        try {
-            username = jwtUtil.extractUsername(jwt);
-
-            // 如果 token 有效且用户未认证
-            if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
-
-                if (jwtUtil.validateToken(jwt, userDetails.getUsername())) {
-                    UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                            userDetails,
-                            null,
-                            userDetails.getAuthorities()
-                    );
-                    authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                    SecurityContextHolder.getContext().setAuthentication(authToken);
-                }
-            }
-        } catch (Exception e) {
-            // Token 无效，继续处理但不设置认证
-            logger.error("JWT validation error: " + e.getMessage());
+        // 如果用户未认证，校验 token（签名校验结果有缓存，不查询数据库）
+        if (SecurityContextHolder.getContext().getAuthentication() == null) {
+            jwtTokenService.authenticate(authHeader.substring(7)).ifPresent(principal -> {
+                UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
+                        principal,
+                        null,
+                        adminUserIds.contains(principal.userId())
+                                ? List.of(new SimpleGrantedAuthority(ROLE_ADMIN))
+                                : List.of()
+                );
+                authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                SecurityContextHolder.getContext().setAuthentication(authToken);
+            });
         }
 
+        // Token 无效时继续处理但不设置认证
         filterChain.doFilter(request, response);
     }
 }
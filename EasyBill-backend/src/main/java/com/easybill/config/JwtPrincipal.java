@@ -0,0 +1,14 @@
+package com.easybill.config;
+
+import java.security.Principal;
+
+/**
+ * JWT 认证后的当前用户，直接由 token 中的 userId、subject 构建，不查询数据库
+ */
+public record JwtPrincipal(Long userId, String username) implements Principal {
+
+    @Override
+    public String getName() {
+        return username;
+    }
+}
@@ -0,0 +1,80 @@
+package com.easybill.config;
+
+import org.springframework.ai.autoconfigure.openai.OpenAiChatProperties;
+import org.springframework.ai.autoconfigure.openai.OpenAiConnectionProperties;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.model.function.FunctionCallbackContext;
+import org.springframework.ai.openai.OpenAiChatModel;
+import org.springframework.ai.openai.api.OpenAiApi;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.util.StringUtils;
+import org.springframework.web.client.ResponseErrorHandler;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+@Configuration
+public class LlmClientConfig {
+
+    @Value("${easybill.llm.connect-timeout-ms:5000}")
+    private long connectTimeoutMs;
+
+    @Value("${easybill.llm.read-timeout-ms:30000}")
+    private long readTimeoutMs;
+
+    @Value("${easybill.llm.http2:true}")
+    private boolean http2;
+
+    /**
+     * 模型接口使用的 HTTP 客户端
+     * 单个 JDK HttpClient 实例复用 keep-alive 连接，服务端支持时协商 HTTP/2，
+     * 并设置连接和读取超时，避免无限等待。只用于模型接口，不影响应用中其他 RestClient
+     */
+    private RestClient.Builder llmRestClientBuilder() {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .build();
+
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(Duration.ofMillis(readTimeoutMs));
+
+        return RestClient.builder().requestFactory(requestFactory);
+    }
+
+    /**
+     * 替换自动配置的 OpenAiChatModel，只有它使用上面的 HTTP 客户端
+     * 地址、Key、模型参数和重试仍读取 spring.ai.openai.* / spring.ai.retry.* 配置
+     */
+    @Bean
+    public OpenAiChatModel openAiChatModel(
+            OpenAiConnectionProperties connectionProperties,
+            OpenAiChatProperties chatProperties,
+            FunctionCallbackContext functionCallbackContext,
+            RetryTemplate retryTemplate,
+            ResponseErrorHandler responseErrorHandler
+    ) {
+        String baseUrl = StringUtils.hasText(chatProperties.getBaseUrl())
+                ? chatProperties.getBaseUrl() : connectionProperties.getBaseUrl();
+        String apiKey = StringUtils.hasText(chatProperties.getApiKey())
+                ? chatProperties.getApiKey() : connectionProperties.getApiKey();
+
+        OpenAiApi openAiApi = new OpenAiApi(baseUrl, apiKey, llmRestClientBuilder(), WebClient.builder(),
+                responseErrorHandler);
+        return new OpenAiChatModel(openAiApi, chatProperties.getOptions(), functionCallbackContext, retryTemplate);
+    }
+
+    /**
+     * 全局复用的 ChatClient，避免每次解析都重新构建
+     */
+    @Bean
+    public ChatClient chatClient(ChatClient.Builder chatClientBuilder) {
+        return chatClientBuilder.build();
+    }
+}
@@ -1,10 +1,17 @@
 package com.easybill.config;
 
+import com.easybill.service.ApiKeyAuthService;
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.ProviderManager;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -29,15 +36,58 @@ public class SecurityConfig {
 
     private final JwtAuthenticationFilter jwtAuthFilter;
     private final UserDetailsService userDetailsService;
+    private final ApiKeyAuthService apiKeyAuthService;
 
+    /**
+     * Webhook 过滤器链：只做 API Key 认证，不经过 JWT 过滤器
+     */
     @Bean
+    @Order(1)
+    public SecurityFilterChain webhookFilterChain(HttpSecurity http) throws Exception {
+        AuthenticationManager apiKeyAuthenticationManager =
+                new ProviderManager(new ApiKeyAuthenticationProvider(apiKeyAuthService));
+
+        http
+                .securityMatcher("/api/webhook/**")
+                .csrf(csrf -> csrf.disable())
+                .authorizeHttpRequests(auth -> auth
+                        .anyRequest().authenticated()
+                )
+                .sessionManagement(session -> session
+                        .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+                )
+                .exceptionHandling(exception -> exception
+                        .authenticationEntryPoint((request, response, authException) -> {
+                            response.setStatus(HttpStatus.UNAUTHORIZED.value());
+                            response.setContentType("application/json;charset=UTF-8");
+                            response.getWriter().write("{\"success\":false,\"message\":\"无效的 API Key\"}");
+                        })
+                )
+                .addFilterBefore(new ApiKeyAuthenticationFilter(apiKeyAuthenticationManager),
+                        UsernamePasswordAuthenticationFilter.class);
+
+        return http.build();
+    }
+
+    @Bean
+    @Order(2)
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
         http
                 .csrf(csrf -> csrf.disable())
                 .cors(cors -> cors.configurationSource(corsConfigurationSource()))
                 .authorizeHttpRequests(auth -> auth
+                        // 流式响应（SSE、导出）结束时的异步分派沿用原请求，原请求已完成认证
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+                        .requestMatchers("/api/auth/api-key/**").authenticated()
                         .requestMatchers("/api/auth/**").permitAll()
-                        .requestMatchers("/api/webhook/**").permitAll()
+                        // 运维接口只允许 easybill.admin.user-ids 中的用户调用
+                        .requestMatchers(HttpMethod.POST,
+                                "/api/parser/rules/reload", "/api/parser/cache/invalidate", "/api/parser/retry",
+                                "/api/stats/rollups/rebuild-all")
+                                .hasAuthority(JwtAuthenticationFilter.ROLE_ADMIN)
+                        // 运行指标包含全局队列、缓存和熔断状态，同样只对管理员开放
+                        .requestMatchers("/api/metrics", "/api/metrics/**")
+                                .hasAuthority(JwtAuthenticationFilter.ROLE_ADMIN)
                         .anyRequest().authenticated()
                 )
                 .sessionManagement(session -> session
@@ -49,6 +99,16 @@ public class SecurityConfig {
         return http.build();
     }
 
+    /**
+     * JWT 过滤器只在主过滤器链中执行，不再作为 Servlet 过滤器对所有请求（含 Webhook）执行
+     */
+    @Bean
+    public FilterRegistrationBean<JwtAuthenticationFilter> jwtAuthFilterRegistration(JwtAuthenticationFilter filter) {
+        FilterRegistrationBean<JwtAuthenticationFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.setEnabled(false);
+        return registration;
+    }
+
     @Bean
     public CorsConfigurationSource corsConfigurationSource() {
         CorsConfiguration configuration = new CorsConfiguration();
@@ -0,0 +1,72 @@
+package com.easybill.config;
+
+import com.easybill.service.MetricsSource;
+import com.easybill.util.ConcurrencyLimitedDataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 虚拟线程执行模式
+ * 由 spring.threads.virtual.enabled 开启，且需运行在 JDK 21 及以上：Tomcat 请求处理、
+ * 定时任务和短信解析线程池（含 AI 调用）都改为虚拟线程。
+ * 此时并发不再受线程数约束，数据库连接改由信号量限流
+ */
+@Configuration
+public class VirtualThreadConfig {
+
+    @Bean
+    static BeanPostProcessor jdbcConcurrencyLimitPostProcessor(Environment environment) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource dataSource) || bean instanceof ConcurrencyLimitedDataSource
+                        || !Threading.VIRTUAL.isActive(environment)) {
+                    return bean;
+                }
+                int poolSize = environment.getProperty("spring.datasource.hikari.maximum-pool-size", Integer.class, 10);
+                return new ConcurrencyLimitedDataSource(
+                        dataSource,
+                        environment.getProperty("easybill.jdbc.max-concurrency", Integer.class, poolSize),
+                        environment.getProperty("easybill.jdbc.max-waiting", Integer.class, 1000),
+                        environment.getProperty("easybill.jdbc.acquire-timeout-ms", Long.class, 30000L)
+                );
+            }
+        };
+    }
+
+    @Bean
+    public MetricsSource executionModeMetrics(Environment environment, DataSource dataSource) {
+        return new MetricsSource() {
+            @Override
+            public String getMetricsName() {
+                return "execution-mode";
+            }
+
+            @Override
+            public Map<String, Object> getMetrics() {
+                Map<String, Object> metrics = new LinkedHashMap<>();
+                metrics.put("virtualThreads", Threading.VIRTUAL.isActive(environment));
+                metrics.put("javaVersion", Runtime.version().toString());
+                metrics.put("tracePinnedThreads", System.getProperty("jdk.tracePinnedThreads", "off"));
+                if (dataSource instanceof ConcurrencyLimitedDataSource limited) {
+                    Map<String, Object> jdbc = new LinkedHashMap<>();
+                    jdbc.put("maxConcurrency", limited.getMaxConcurrency());
+                    jdbc.put("inUse", limited.getInUse());
+                    jdbc.put("waiting", limited.getWaiting());
+                    jdbc.put("acquired", limited.getAcquired());
+                    jdbc.put("timeouts", limited.getTimeouts());
+                    jdbc.put("rejected", limited.getRejected());
+                    metrics.put("jdbc", jdbc);
+                }
+                return metrics;
+            }
+        };
+    }
+}
@@ -1,5 +1,6 @@
 package com.easybill.controller;
 
+import com.easybill.config.JwtPrincipal;
 import com.easybill.dto.AccountCreateRequest;
 import com.easybill.dto.AccountDTO;
 import com.easybill.service.AccountService;
@@ -90,6 +91,6 @@ public class AccountController {
      */
     private Long getCurrentUserId() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        return 1L;
+        return ((JwtPrincipal) authentication.getPrincipal()).userId();
     }
 }
@@ -27,6 +27,14 @@ public class AuthController {
         }
     }
 
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(@RequestHeader(value = "Authorization", required = false) String authHeader) {
+        if (authHeader != null && authHeader.startsWith("Bearer ")) {
+            authService.logout(authHeader.substring(7));
+        }
+        return ResponseEntity.noContent().build();
+    }
+
     @GetMapping("/me")
     public ResponseEntity<UserDTO> getCurrentUser() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
@@ -34,4 +42,14 @@ public class AuthController {
         UserDTO user = authService.getCurrentUser(username);
         return ResponseEntity.ok(user);
     }
+
+    /**
+     * 轮换 Webhook API Key（旧 Key 立即失效，需同步更新快捷指令）
+     */
+    @PostMapping("/api-key/rotate")
+    public ResponseEntity<UserDTO> rotateApiKey() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        UserDTO user = authService.rotateApiKey(authentication.getName());
+        return ResponseEntity.ok(user);
+    }
 }
@@ -1,5 +1,6 @@
 package com.easybill.controller;
 
+import com.easybill.config.JwtPrincipal;
 import com.easybill.dto.CategoryCreateRequest;
 import com.easybill.dto.CategoryDTO;
 import com.easybill.service.CategoryService;
@@ -88,6 +89,6 @@ public class CategoryController {
      */
     private Long getCurrentUserId() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        return 1L; // 暂时返回固定值
+        return ((JwtPrincipal) authentication.getPrincipal()).userId();
     }
 }
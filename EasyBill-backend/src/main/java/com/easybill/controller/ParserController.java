@@ -0,0 +1,66 @@
+package com.easybill.controller;
+
+import com.easybill.service.ParseCacheService;
+import com.easybill.service.SmsRetryService;
+import com.easybill.service.SmsRuleParser;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/parser")
+@RequiredArgsConstructor
+public class ParserController {
+
+    private final SmsRuleParser smsRuleParser;
+    private final ParseCacheService parseCacheService;
+    private final SmsRetryService smsRetryService;
+
+    /**
+     * 重新加载短信解析规则（修改 prompt_templates / sms_sources 后调用）
+     */
+    @PostMapping("/rules/reload")
+    public ResponseEntity<Map<String, Object>> reloadRules() {
+        int count = smsRuleParser.reload();
+        return ResponseEntity.ok(Map.of(
+                "success", true,
+                "message", "解析规则已重新加载",
+                "count", count
+        ));
+    }
+
+    /**
+     * 清空 AI 解析缓存（调整 Prompt 模板后调用）
+     */
+    @PostMapping("/cache/invalidate")
+    public ResponseEntity<Map<String, Object>> invalidateCache() {
+        long deleted = parseCacheService.invalidateAll();
+        return ResponseEntity.ok(Map.of(
+                "success", true,
+                "message", "解析缓存已清空",
+                "deleted", deleted
+        ));
+    }
+
+    /**
+     * 在后台立即执行一轮失败短信重试（dryRun=true 时只统计可解析的条数，不修改数据）
+     * 重试按限速逐条调用 AI，耗时较长，立即返回 202，结果见 GET /api/metrics/sms-retry 的 lastReport
+     */
+    @PostMapping("/retry")
+    public ResponseEntity<Map<String, Object>> retryFailed(@RequestParam(defaultValue = "true") boolean dryRun) {
+        if (!smsRetryService.submit(dryRun)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of(
+                    "success", false,
+                    "message", "已有一轮重试在执行"
+            ));
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of(
+                "success", true,
+                "message", "重试已开始",
+                "dryRun", dryRun
+        ));
+    }
+}
@@ -1,8 +1,12 @@
 package com.easybill.controller;
 
+import com.easybill.config.JwtPrincipal;
 import com.easybill.dto.CategoryStatsDTO;
+import com.easybill.dto.RollupCheckReport;
 import com.easybill.dto.StatsSummaryDTO;
+import com.easybill.dto.TimeSeriesDTO;
 import com.easybill.entity.TransactionType;
+import com.easybill.service.StatsRollupService;
 import com.easybill.service.StatsService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
@@ -11,8 +15,10 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/stats")
@@ -20,6 +26,7 @@ import java.util.List;
 public class StatsController {
 
     private final StatsService statsService;
+    private final StatsRollupService statsRollupService;
 
     /**
      * 获取统计摘要
@@ -48,11 +55,57 @@ public class StatsController {
         return ResponseEntity.ok(stats);
     }
 
+    /**
+     * 获取趋势数据
+     * interval: DAY / WEEK / MONTH；split: NONE / CATEGORY / ACCOUNT；未指定日期时默认最近 30 天 / 12 周 / 12 个月
+     */
+    @GetMapping("/timeseries")
+    public ResponseEntity<TimeSeriesDTO> getTimeSeries(
+            @RequestParam(defaultValue = "DAY") TimeSeriesDTO.Interval interval,
+            @RequestParam(defaultValue = "NONE") TimeSeriesDTO.Split split,
+            @RequestParam(required = false) TransactionType type,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate
+    ) {
+        Long userId = getCurrentUserId();
+        try {
+            return ResponseEntity.ok(statsService.getTimeSeries(userId, interval, split, type, startDate, endDate));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * 重建当前用户的统计汇总
+     */
+    @PostMapping("/rollups/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildRollups() {
+        int buckets = statsRollupService.rebuild(getCurrentUserId());
+        return ResponseEntity.ok(Map.of("success", true, "buckets", buckets));
+    }
+
+    /**
+     * 重建全部用户的统计汇总（首次开启前回填历史数据，仅管理员）
+     */
+    @PostMapping("/rollups/rebuild-all")
+    public ResponseEntity<Map<String, Object>> rebuildAllRollups() {
+        int users = statsRollupService.rebuildAll();
+        return ResponseEntity.ok(Map.of("success", true, "users", users));
+    }
+
+    /**
+     * 对比统计汇总与交易明细（repair=true 时发现差异立即重建）
+     */
+    @GetMapping("/rollups/check")
+    public ResponseEntity<RollupCheckReport> checkRollups(@RequestParam(defaultValue = "false") boolean repair) {
+        return ResponseEntity.ok(statsRollupService.check(getCurrentUserId(), repair));
+    }
+
     /**
      * 获取当前用户ID
      */
     private Long getCurrentUserId() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        return 1L;
+        return ((JwtPrincipal) authentication.getPrincipal()).userId();
     }
 }
@@ -1,19 +1,37 @@
 package com.easybill.controller;
 
+import com.easybill.config.JwtPrincipal;
+import com.easybill.dto.CursorPageResponse;
 import com.easybill.dto.PageResponse;
+import com.easybill.dto.StatementImportStatusDTO;
+import com.easybill.dto.TransactionBatchRequest;
 import com.easybill.dto.TransactionDTO;
 import com.easybill.dto.TransactionUpdateRequest;
 import com.easybill.entity.TransactionStatus;
 import com.easybill.entity.TransactionType;
+import com.easybill.service.StatementImportService;
+import com.easybill.service.TransactionEventService;
+import com.easybill.service.TransactionExportService;
 import com.easybill.service.TransactionService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Map;
 
@@ -23,6 +41,9 @@ import java.util.Map;
 public class TransactionController {
 
     private final TransactionService transactionService;
+    private final TransactionExportService transactionExportService;
+    private final StatementImportService statementImportService;
+    private final TransactionEventService transactionEventService;
 
     /**
      * 获取交易列表
@@ -50,6 +71,110 @@ public class TransactionController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * 按游标获取交易列表（无限滚动，按交易时间排序）
+     * 首页不传 cursor，之后传上一页返回的 nextCursor；不返回总数
+     */
+    @GetMapping("/scroll")
+    public ResponseEntity<CursorPageResponse<TransactionDTO>> scrollTransactions(
+            @RequestParam(required = false) TransactionType type,
+            @RequestParam(required = false) TransactionStatus status,
+            @RequestParam(required = false) Long categoryId,
+            @RequestParam(required = false) Long accountId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "desc") String sortDirection
+    ) {
+        Long userId = getCurrentUserId();
+        
+        try {
+            CursorPageResponse<TransactionDTO> response = transactionService.getTransactionsByCursor(
+                    userId, type, status, categoryId, accountId,
+                    startDate, endDate, cursor, Math.max(1, Math.min(size, 200)), sortDirection
+            );
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * 导出交易（CSV，UTF-8 带 BOM）
+     * 筛选条件与列表接口一致，结果边查边写，不在内存中汇总
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportTransactions(
+            @RequestParam(required = false) TransactionType type,
+            @RequestParam(required = false) TransactionStatus status,
+            @RequestParam(required = false) Long categoryId,
+            @RequestParam(required = false) Long accountId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate
+    ) {
+        Long userId = getCurrentUserId();
+        String filename = "transactions-" + LocalDate.now().format(DateTimeFormatter.BASIC_ISO_DATE) + ".csv";
+
+        StreamingResponseBody body = outputStream -> transactionExportService.exportCsv(
+                userId, type, status, categoryId, accountId, startDate, endDate, outputStream
+        );
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + filename)
+                .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                .body(body);
+    }
+
+    /**
+     * 订阅交易变更事件（SSE）
+     * 事件名为 created/updated/deleted/refresh，前端据此增量更新列表，无需轮询；
+     * 连接建立（含断线重连）后先刷新一次列表，连接期间的变更不会补发
+     */
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> subscribeEvents(@AuthenticationPrincipal JwtPrincipal principal) {
+        Long userId = principal.userId();
+        try {
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.CACHE_CONTROL, "no-cache")
+                    .header("X-Accel-Buffering", "no")
+                    .body(transactionEventService.subscribe(userId));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
+    /**
+     * 导入账单文件（CSV），后台异步处理
+     * 返回任务 ID，通过 GET /api/transactions/import/{jobId} 查询进度
+     */
+    @PostMapping("/import")
+    public ResponseEntity<StatementImportStatusDTO> importStatement(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(required = false) Long accountId,
+            @RequestParam(defaultValue = "UTF-8") String charset
+    ) throws IOException {
+        Long userId = getCurrentUserId();
+
+        try {
+            return statementImportService.submit(userId, file, accountId, charset)
+                    .map(status -> ResponseEntity.status(HttpStatus.ACCEPTED).body(status))
+                    .orElseGet(() -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * 查询账单导入进度
+     */
+    @GetMapping("/import/{jobId}")
+    public ResponseEntity<StatementImportStatusDTO> getImportStatus(@PathVariable String jobId) {
+        Long userId = getCurrentUserId();
+        return statementImportService.getStatus(jobId, userId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
     /**
      * 获取交易详情
      */
@@ -94,11 +219,67 @@ public class TransactionController {
             @RequestBody List<Long> ids
     ) {
         Long userId = getCurrentUserId();
-        transactionService.batchConfirmTransactions(ids, userId);
+        try {
+            int count = transactionService.batchConfirmTransactions(ids, userId);
+            return batchResult("批量确认成功", count);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * 批量修改分类
+     */
+    @PostMapping("/batch/category")
+    public ResponseEntity<Map<String, Object>> batchUpdateCategory(
+            @RequestBody TransactionBatchRequest request
+    ) {
+        Long userId = getCurrentUserId();
+        try {
+            int count = transactionService.batchUpdateCategory(request.getIds(), request.getCategoryId(), userId);
+            return batchResult("批量修改分类成功", count);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * 批量修改账户
+     */
+    @PostMapping("/batch/account")
+    public ResponseEntity<Map<String, Object>> batchUpdateAccount(
+            @RequestBody TransactionBatchRequest request
+    ) {
+        Long userId = getCurrentUserId();
+        try {
+            int count = transactionService.batchUpdateAccount(request.getIds(), request.getAccountId(), userId);
+            return batchResult("批量修改账户成功", count);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * 批量删除交易
+     */
+    @PostMapping("/batch/delete")
+    public ResponseEntity<Map<String, Object>> batchDeleteTransactions(
+            @RequestBody List<Long> ids
+    ) {
+        Long userId = getCurrentUserId();
+        try {
+            int count = transactionService.batchDeleteTransactions(ids, userId);
+            return batchResult("批量删除成功", count);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    private ResponseEntity<Map<String, Object>> batchResult(String message, int count) {
         return ResponseEntity.ok(Map.of(
                 "success", true,
-                "message", "批量确认成功",
-                "count", ids.size()
+                "message", message,
+                "count", count
         ));
     }
 
@@ -107,8 +288,6 @@ public class TransactionController {
      */
     private Long getCurrentUserId() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        // 这里简化处理，实际应该从 UserDetails 中获取
-        // 暂时返回固定值，后续可以优化
-        return 1L;
+        return ((JwtPrincipal) authentication.getPrincipal()).userId();
     }
 }
@@ -1,18 +1,31 @@
 package com.easybill.controller;
 
+import com.easybill.dto.SmsBatchItemResult;
+import com.easybill.dto.SmsIngestionStatusDTO;
 import com.easybill.dto.SmsWebhookRequest;
+import com.easybill.entity.RawSmsLog;
 import com.easybill.entity.Transaction;
 import com.easybill.entity.User;
-import com.easybill.repository.UserRepository;
+import com.easybill.service.SmsIngestionService;
 import com.easybill.service.SmsProcessingService;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 @Slf4j
 @RestController
@@ -20,14 +33,24 @@ import java.util.Map;
 public class WebhookController {
     
     @Autowired
-    private UserRepository userRepository;
+    private SmsProcessingService smsProcessingService;
     
     @Autowired
-    private SmsProcessingService smsProcessingService;
+    private SmsIngestionService smsIngestionService;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
     
+    @Value("${easybill.sms.async.enabled:false}")
+    private boolean asyncEnabled;
+    
+    /**
+     * 接收短信
+     * API Key 由 Webhook 过滤器链认证（Authorization: Bearer {api_key}），无效时直接返回 401
+     */
     @PostMapping("/sms")
     public ResponseEntity<Map<String, Object>> handleSms(
-            @RequestHeader("Authorization") String authHeader,
+            @AuthenticationPrincipal User user,
             @RequestBody SmsWebhookRequest request) {
         
         log.info("收到 Webhook 请求，发件人: {}", request.getSender());
@@ -35,23 +58,34 @@ public class WebhookController {
         Map<String, Object> response = new HashMap<>();
         
         try {
-            // 1. 验证 API Key
-            String apiKey = extractApiKey(authHeader);
-            if (apiKey == null) {
-                response.put("success", false);
-                response.put("message", "缺少 Authorization Header");
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
+            // 1. 异步模式：落库后立即返回 202，由工作线程解析
+            if (asyncEnabled) {
+                Optional<RawSmsLog> accepted = smsIngestionService.submit(user, request);
+                if (accepted.isEmpty()) {
+                    response.put("success", false);
+                    response.put("message", "系统繁忙，请稍后重试");
+                    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                            .header(HttpHeaders.RETRY_AFTER, "5")
+                            .body(response);
+                }
+                
+                Long logId = accepted.get().getId();
+                response.put("success", true);
+                response.put("message", "短信已接收，正在解析");
+                response.put("log_id", logId);
+                response.put("status", "PENDING");
+                response.put("status_url", "/api/webhook/sms/" + logId);
+                return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
             }
             
-            User user = userRepository.findByApiKey(apiKey).orElse(null);
-            if (user == null) {
-                response.put("success", false);
-                response.put("message", "无效的 API Key");
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
-            }
-            
-            // 2. 处理短信
+            // 2. 同步模式：直接处理短信
             Transaction transaction = smsProcessingService.processSms(user, request);
+            if (transaction == null) {
+                // AI 服务暂不可用（延后解析）或重复短信的原交易尚未生成，短信已保存
+                response.put("success", true);
+                response.put("message", "短信已保存，交易稍后生成");
+                return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+            }
             
             // 3. 返回结果
             response.put("success", true);
@@ -76,13 +110,61 @@ public class WebhookController {
     }
     
     /**
-     * 从 Authorization Header 提取 API Key
-     * 支持格式: "Bearer {api_key}"
+     * 批量接收短信（离线积压后回放）
+     * 请求体为 JSON 数组或 NDJSON（每行一条），以流方式读取，落库后进入异步解析队列
+     */
+    @PostMapping(value = "/sms/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<Map<String, Object>> handleSmsBatch(
+            @AuthenticationPrincipal User user,
+            HttpServletRequest httpRequest) {
+        
+        Map<String, Object> response = new HashMap<>();
+        
+        log.info("收到批量 Webhook 请求，用户: {}", user.getUsername());
+        
+        // 1. 流式读取并批量落库
+        List<SmsBatchItemResult> results;
+        try (MappingIterator<SmsWebhookRequest> requests = objectMapper
+                .readerFor(SmsWebhookRequest.class)
+                .readValues(httpRequest.getInputStream())) {
+            results = smsIngestionService.submitBatch(user, requests);
+        } catch (IOException e) {
+            log.warn("读取批量请求体失败: {}", e.getMessage());
+            response.put("success", false);
+            response.put("message", "请求体格式错误: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        }
+        
+        // 2. 返回逐条结果
+        long accepted = results.stream().filter(r -> "PENDING".equals(r.getStatus())).count();
+        response.put("success", true);
+        response.put("message", "已接收 " + accepted + " 条短信");
+        response.put("total", results.size());
+        response.put("accepted", accepted);
+        response.put("rejected", results.size() - accepted);
+        response.put("results", results);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+    }
+    
+    /**
+     * 查询短信解析状态（异步模式下轮询使用）
      */
-    private String extractApiKey(String authHeader) {
-        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-            return null;
+    @GetMapping("/sms/{logId}")
+    public ResponseEntity<Map<String, Object>> getSmsStatus(
+            @AuthenticationPrincipal User user,
+            @PathVariable Long logId) {
+        
+        Map<String, Object> response = new HashMap<>();
+        
+        Optional<SmsIngestionStatusDTO> status = smsIngestionService.getStatus(logId, user.getId());
+        if (status.isEmpty()) {
+            response.put("success", false);
+            response.put("message", "短信记录不存在");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
         }
-        return authHeader.substring(7);
+        
+        response.put("success", true);
+        response.put("data", status.get());
+        return ResponseEntity.ok(response);
     }
 }
@@ -0,0 +1,20 @@
+package com.easybill.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RollupCheckReport {
+    private Long userId;
+    private Integer bucketsChecked;
+    private Integer mismatchCount;
+    private List<String> mismatches; // 最多列出前 100 条
+    private Boolean repaired;
+}
@@ -0,0 +1,17 @@
+package com.easybill.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SmsBatchItemResult {
+    private Integer index;
+    private Long logId;
+    private String status; // PENDING, INVALID, REJECTED, ERROR
+    private String message;
+}
@@ -0,0 +1,22 @@
+package com.easybill.dto;
+
+import com.easybill.entity.TransactionStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SmsIngestionStatusDTO {
+    private Long logId;
+    private String parseStatus;
+    private String errorMessage;
+    private Long transactionId;
+    private TransactionStatus transactionStatus;
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,20 @@
+package com.easybill.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SmsRetryReport {
+    private boolean dryRun;
+    private int scanned;
+    private int succeeded;  // 解析成功（试运行时为可解析的条数）
+    private int skipped;    // 重复或交易已被用户确认
+    private int failed;     // 仍解析失败，已安排退避重试
+    private int exhausted;  // 本轮达到次数上限
+    private boolean aborted; // AI 不可用或已有重试在执行，提前结束
+}
@@ -0,0 +1,30 @@
+package com.easybill.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatementImportStatusDTO {
+    private String jobId;
+    private String fileName;
+    private String status; // QUEUED, RUNNING, COMPLETED, FAILED
+    private long totalBytes;
+    private long processedBytes;
+    private int progress; // 0-100，按已读取字节估算
+    private long processedRows;
+    private long importedRows;
+    private long duplicateRows;
+    private long invalidRows;
+    private List<String> errors; // 前若干条无效行的原因（含行号）
+    private String errorMessage;
+    private LocalDateTime createdAt;
+    private LocalDateTime finishedAt;
+}
@@ -0,0 +1,62 @@
+package com.easybill.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TimeSeriesDTO {
+    private Interval interval;
+    private Split split;
+    private LocalDate startDate;
+    private LocalDate endDate;
+    private List<Series> series;
+
+    public enum Interval {
+        DAY,
+        WEEK,   // 周一开始
+        MONTH
+    }
+
+    public enum Split {
+        NONE,
+        CATEGORY,
+        ACCOUNT
+    }
+
+    /**
+     * 一条曲线：不拆分时只有一条；按分类/账户拆分时每个分类/账户一条，未分类/未关联账户的 groupId 为 0
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Series {
+        private Long groupId;
+        private String groupName;
+        private List<Point> points;
+    }
+
+    /**
+     * 一个时间桶，period 为桶的起始日期；无交易的桶金额为 0
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Point {
+        private LocalDate period;
+        private BigDecimal income;
+        private BigDecimal expense;
+        private Integer incomeCount;
+        private Integer expenseCount;
+    }
+}
@@ -0,0 +1,16 @@
+package com.easybill.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionBatchRequest {
+    private List<Long> ids;
+    private Long categoryId; // 批量改分类，为空时清除分类
+    private Long accountId; // 批量改账户，为空时清除账户
+}
@@ -0,0 +1,50 @@
+package com.easybill.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+@Data
+@Entity
+@Table(name = "prompt_templates")
+public class PromptTemplate {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "bank_type", nullable = false, unique = true, length = 50)
+    private String bankType;
+    
+    @Column(name = "template_name", nullable = false, length = 100)
+    private String templateName;
+    
+    @Column(name = "template_content", nullable = false, columnDefinition = "TEXT")
+    private String templateContent;
+    
+    @Column(name = "example_sms", columnDefinition = "TEXT")
+    private String exampleSms;
+    
+    @Column(name = "parse_pattern", columnDefinition = "TEXT")
+    private String parsePattern; // 快速解析正则（命名分组），为空则只走 AI
+    
+    @Column(name = "is_default")
+    private Boolean isDefault = false;
+    
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+    }
+    
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
@@ -29,11 +29,17 @@ public class RawSmsLog {
     private String deviceInfo;
     
     @Column(name = "parse_status", length = 20)
-    private String parseStatus = "PENDING"; // PENDING, SUCCESS, FAILED
+    private String parseStatus = "PENDING"; // PENDING, PROCESSING, SUCCESS, FAILED, ERROR, DUPLICATE, DEFERRED
     
     @Column(name = "error_message", columnDefinition = "TEXT")
     private String errorMessage;
     
+    @Column(name = "retry_count")
+    private Integer retryCount = 0;
+    
+    @Column(name = "next_retry_at")
+    private LocalDateTime nextRetryAt;
+    
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
     
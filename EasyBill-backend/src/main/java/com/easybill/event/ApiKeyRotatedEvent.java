@@ -0,0 +1,12 @@
+package com.easybill.event;
+
+/**
+ * 用户轮换了 Webhook API Key
+ * 在事务提交后由监听方使旧 Key 的认证缓存失效
+ * @param oldApiKey  轮换前的 Key，可能为 null
+ */
+public record ApiKeyRotatedEvent(
+        Long userId,
+        String oldApiKey
+) {
+}
@@ -0,0 +1,47 @@
+package com.easybill.event;
+
+import com.easybill.dto.TransactionDTO;
+
+import java.util.List;
+
+/**
+ * 用户的交易发生新增、修改、删除或状态变更
+ * 在事务提交后由监听方处理（如统计缓存失效、推送给前端）
+ * @param changeType      变更类型；无法逐条描述的变更（如批量导入、汇总重建）为 REFRESH
+ * @param transactionIds  涉及的交易 ID（REFRESH 时为空）
+ * @param transaction     单条新增或修改时的交易内容，其余情况为 null
+ */
+public record TransactionChangedEvent(
+        Long userId,
+        ChangeType changeType,
+        List<Long> transactionIds,
+        TransactionDTO transaction
+) {
+
+    public TransactionChangedEvent(Long userId) {
+        this(userId, ChangeType.REFRESH, List.of(), null);
+    }
+
+    public static TransactionChangedEvent created(Long userId, TransactionDTO transaction) {
+        return new TransactionChangedEvent(userId, ChangeType.CREATED, List.of(transaction.getId()), transaction);
+    }
+
+    public static TransactionChangedEvent updated(Long userId, TransactionDTO transaction) {
+        return new TransactionChangedEvent(userId, ChangeType.UPDATED, List.of(transaction.getId()), transaction);
+    }
+
+    public static TransactionChangedEvent updated(Long userId, List<Long> transactionIds) {
+        return new TransactionChangedEvent(userId, ChangeType.UPDATED, List.copyOf(transactionIds), null);
+    }
+
+    public static TransactionChangedEvent deleted(Long userId, List<Long> transactionIds) {
+        return new TransactionChangedEvent(userId, ChangeType.DELETED, List.copyOf(transactionIds), null);
+    }
+
+    public enum ChangeType {
+        CREATED,
+        UPDATED,
+        DELETED,
+        REFRESH
+    }
+}
@@ -0,0 +1,53 @@
+package com.easybill.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * 幂等键表（idempotency_keys）
+ */
+@Repository
+@RequiredArgsConstructor
+public class IdempotencyKeyRepository {
+
+    private static final String CLAIM_SQL = """
+        INSERT IGNORE INTO idempotency_keys (idempotency_key, created_at) VALUES (:key, :createdAt)
+        """;
+
+    private static final String EXISTS_SQL = """
+        SELECT COUNT(*) FROM idempotency_keys WHERE idempotency_key = :key
+        """;
+
+    private static final String PURGE_SQL = """
+        DELETE FROM idempotency_keys WHERE created_at < :before
+        """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * 占用幂等键，主键冲突时不插入
+     * @return true 如果本次占用成功
+     */
+    public boolean claim(String key) {
+        return jdbcTemplate.update(CLAIM_SQL, new MapSqlParameterSource()
+                .addValue("key", key)
+                .addValue("createdAt", LocalDateTime.now())) == 1;
+    }
+
+    public boolean exists(String key) {
+        Integer count = jdbcTemplate.queryForObject(EXISTS_SQL, new MapSqlParameterSource("key", key), Integer.class);
+        return count != null && count > 0;
+    }
+
+    /**
+     * 删除指定时间之前占用的幂等键
+     * @return 删除的条数
+     */
+    public int deleteCreatedBefore(LocalDateTime before) {
+        return jdbcTemplate.update(PURGE_SQL, new MapSqlParameterSource("before", before));
+    }
+}
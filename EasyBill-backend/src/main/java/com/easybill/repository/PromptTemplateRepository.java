@@ -0,0 +1,15 @@
+package com.easybill.repository;
+
+import com.easybill.entity.PromptTemplate;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface PromptTemplateRepository extends JpaRepository<PromptTemplate, Long> {
+    
+    Optional<PromptTemplate> findByBankType(String bankType);
+    
+    List<PromptTemplate> findByParsePatternIsNotNull();
+}
@@ -0,0 +1,84 @@
+package com.easybill.repository;
+
+import com.easybill.entity.RawSmsLog;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 原始短信日志批量写入（JDBC batch，配合 rewriteBatchedStatements 合并为多行 INSERT）
+ */
+@Repository
+@RequiredArgsConstructor
+public class RawSmsLogBatchRepository {
+
+    private static final String INSERT_SQL = """
+        INSERT INTO raw_sms_logs (user_id, sender, full_content, device_info, parse_status, created_at)
+        VALUES (:userId, :sender, :fullContent, :deviceInfo, :parseStatus, :createdAt)
+        """;
+
+    private static final String UPDATE_STATUS_SQL = """
+        UPDATE raw_sms_logs SET parse_status = :parseStatus, error_message = :errorMessage WHERE id = :id
+        """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * 批量插入并回填自增 ID
+     */
+    public void insertAll(List<RawSmsLog> logs) {
+        if (logs.isEmpty()) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        SqlParameterSource[] params = new SqlParameterSource[logs.size()];
+        for (int i = 0; i < logs.size(); i++) {
+            RawSmsLog smsLog = logs.get(i);
+            smsLog.setCreatedAt(now);
+            params[i] = new MapSqlParameterSource()
+                    .addValue("userId", smsLog.getUserId())
+                    .addValue("sender", smsLog.getSender())
+                    .addValue("fullContent", smsLog.getFullContent())
+                    .addValue("deviceInfo", smsLog.getDeviceInfo())
+                    .addValue("parseStatus", smsLog.getParseStatus())
+                    .addValue("createdAt", now);
+        }
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(INSERT_SQL, params, keyHolder, new String[]{"id"});
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < logs.size() && i < keys.size(); i++) {
+            Object key = keys.get(i).values().iterator().next();
+            logs.get(i).setId(((Number) key).longValue());
+        }
+    }
+
+    /**
+     * 批量更新解析状态和错误信息（一次往返提交）
+     */
+    public void updateStatusAll(List<RawSmsLog> logs) {
+        if (logs.isEmpty()) {
+            return;
+        }
+
+        SqlParameterSource[] params = new SqlParameterSource[logs.size()];
+        for (int i = 0; i < logs.size(); i++) {
+            RawSmsLog smsLog = logs.get(i);
+            params[i] = new MapSqlParameterSource()
+                    .addValue("id", smsLog.getId())
+                    .addValue("parseStatus", smsLog.getParseStatus())
+                    .addValue("errorMessage", smsLog.getErrorMessage());
+        }
+        jdbcTemplate.batchUpdate(UPDATE_STATUS_SQL, params);
+    }
+}
@@ -1,14 +1,114 @@
 package com.easybill.repository;
 
 import com.easybill.entity.RawSmsLog;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface RawSmsLogRepository extends JpaRepository<RawSmsLog, Long> {
     
+    /**
+     * 只读取去重所需字段的投影
+     */
+    interface ContentView {
+        Long getId();
+        Long getUserId();
+        String getSender();
+        String getFullContent();
+    }
+    
     List<RawSmsLog> findByUserIdOrderByCreatedAtDesc(Long userId);
     
     List<RawSmsLog> findByUserIdAndParseStatus(Long userId, String parseStatus);
+    
+    Optional<RawSmsLog> findByIdAndUserId(Long id, Long userId);
+    
+    /**
+     * 按 ID 顺序查询指定状态、已到重试时间的日志
+     */
+    @Query("SELECT l FROM RawSmsLog l WHERE l.parseStatus = :status " +
+           "AND (l.nextRetryAt IS NULL OR l.nextRetryAt <= :now) ORDER BY l.id ASC")
+    List<RawSmsLog> findDue(
+        @Param("status") String status,
+        @Param("now") LocalDateTime now,
+        Pageable pageable
+    );
+    
+    /**
+     * 条件更新解析状态：只有当前状态仍为 fromStatus 时才更新，用于多线程、多实例间抢占同一条日志
+     * @return 1 表示抢占成功，0 表示已被其他线程或实例处理
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE RawSmsLog l SET l.parseStatus = :toStatus WHERE l.id = :id AND l.parseStatus = :fromStatus")
+    int updateStatusIf(
+        @Param("id") Long id,
+        @Param("fromStatus") String fromStatus,
+        @Param("toStatus") String toStatus
+    );
+    
+    long countByParseStatus(String parseStatus);
+    
+    /**
+     * 按 ID 游标分页查询可重试的日志（已到重试时间且未超过次数上限）
+     */
+    @Query("SELECT l FROM RawSmsLog l WHERE l.parseStatus IN :statuses AND l.id > :afterId " +
+           "AND (l.retryCount IS NULL OR l.retryCount < :maxAttempts) " +
+           "AND (l.nextRetryAt IS NULL OR l.nextRetryAt <= :now) ORDER BY l.id ASC")
+    List<RawSmsLog> findRetryable(
+        @Param("statuses") Collection<String> statuses,
+        @Param("afterId") Long afterId,
+        @Param("maxAttempts") int maxAttempts,
+        @Param("now") LocalDateTime now,
+        Pageable pageable
+    );
+    
+    /**
+     * 按 ID 游标分页查询指定状态、创建时间早于给定时刻的日志
+     */
+    List<RawSmsLog> findByParseStatusAndIdGreaterThanAndCreatedAtBeforeOrderByIdAsc(
+        String parseStatus, Long id, LocalDateTime createdAt, Pageable pageable
+    );
+    
+    /**
+     * 按 ID 游标分页查询指定状态、next_retry_at 早于给定时刻的日志（PROCESSING 时即租约已过期）
+     */
+    List<RawSmsLog> findByParseStatusAndIdGreaterThanAndNextRetryAtBeforeOrderByIdAsc(
+        String parseStatus, Long id, LocalDateTime nextRetryAt, Pageable pageable
+    );
+    
+    /**
+     * 抢占待解析日志：PENDING 改为 PROCESSING，租约到期时间记在 next_retry_at
+     * @return 1 表示抢占成功，0 表示已被其他线程或实例处理
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE RawSmsLog l SET l.parseStatus = 'PROCESSING', l.nextRetryAt = :leaseUntil " +
+           "WHERE l.id = :id AND l.parseStatus = 'PENDING'")
+    int claimPending(@Param("id") Long id, @Param("leaseUntil") LocalDateTime leaseUntil);
+    
+    /**
+     * 接管租约已过期的 PROCESSING 日志（处理它的进程已退出）
+     * @return 1 表示接管成功，0 表示已处理完或已被其他实例接管
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE RawSmsLog l SET l.nextRetryAt = :leaseUntil " +
+           "WHERE l.id = :id AND l.parseStatus = 'PROCESSING' AND l.nextRetryAt < :now")
+    int claimExpired(
+        @Param("id") Long id,
+        @Param("now") LocalDateTime now,
+        @Param("leaseUntil") LocalDateTime leaseUntil
+    );
+    
+    List<ContentView> findByIdGreaterThanAndCreatedAtAfterOrderByIdAsc(Long id, LocalDateTime createdAt, Pageable pageable);
 }
@@ -0,0 +1,14 @@
+package com.easybill.repository;
+
+import com.easybill.entity.SmsSource;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import java.util.List;
+
+@Repository
+public interface SmsSourceRepository extends JpaRepository<SmsSource, Long> {
+    
+    List<SmsSource> findByIsActive(Boolean isActive);
+    
+    List<SmsSource> findByUserId(Long userId);
+}
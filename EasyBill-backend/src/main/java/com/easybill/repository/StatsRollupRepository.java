@@ -0,0 +1,270 @@
+package com.easybill.repository;
+
+import com.easybill.entity.TransactionType;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 统计日汇总表读写（stats_daily_rollups）
+ * 以 (用户, 日期, 分类, 类型) 为桶，交易增删改时按差值累加，未分类记为 category_id = 0
+ */
+@Repository
+@RequiredArgsConstructor
+public class StatsRollupRepository {
+
+    private static final String UPSERT_SQL = """
+        INSERT INTO stats_daily_rollups (user_id, stat_date, category_id, type, total_amount, transaction_count)
+        VALUES (:userId, :statDate, :categoryId, :type, :amount, :count)
+        ON DUPLICATE KEY UPDATE
+            total_amount = total_amount + VALUES(total_amount),
+            transaction_count = transaction_count + VALUES(transaction_count)
+        """;
+
+    private static final String DELETE_EMPTY_SQL = """
+        DELETE FROM stats_daily_rollups
+        WHERE user_id = :userId AND stat_date = :statDate AND category_id = :categoryId AND type = :type
+          AND transaction_count = 0
+        """;
+
+    private static final String SUM_BY_TYPE_SQL = """
+        SELECT type, SUM(total_amount) AS total_amount, SUM(transaction_count) AS transaction_count
+        FROM stats_daily_rollups
+        WHERE user_id = :userId AND stat_date BETWEEN :fromDate AND :toDate
+        GROUP BY type
+        """;
+
+    private static final String SUM_BY_CATEGORY_SQL = """
+        SELECT r.category_id, c.name AS category_name, r.type,
+               SUM(r.total_amount) AS total_amount, SUM(r.transaction_count) AS transaction_count
+        FROM stats_daily_rollups r
+        JOIN categories c ON c.id = r.category_id
+        WHERE r.user_id = :userId AND r.stat_date BETWEEN :fromDate AND :toDate
+          AND (:type IS NULL OR r.type = :type)
+        GROUP BY r.category_id, c.name, r.type
+        """;
+
+    private static final String CATEGORY_USERS_SQL =
+        "SELECT DISTINCT user_id FROM stats_daily_rollups WHERE category_id = :categoryId";
+
+    // 删除分类后交易的 category_id 被置空，对应的桶并入未分类（0）
+    private static final String MERGE_CATEGORY_SQL = """
+        INSERT INTO stats_daily_rollups (user_id, stat_date, category_id, type, total_amount, transaction_count)
+        SELECT src.user_id, src.stat_date, 0, src.type, src.total_amount, src.transaction_count
+        FROM stats_daily_rollups src
+        WHERE src.category_id = :categoryId
+        ON DUPLICATE KEY UPDATE
+            total_amount = stats_daily_rollups.total_amount + VALUES(total_amount),
+            transaction_count = stats_daily_rollups.transaction_count + VALUES(transaction_count)
+        """;
+
+    private static final String DELETE_CATEGORY_SQL = "DELETE FROM stats_daily_rollups WHERE category_id = :categoryId";
+
+    private static final String DELETE_USER_SQL = "DELETE FROM stats_daily_rollups WHERE user_id = :userId";
+
+    private static final String REBUILD_USER_SQL = """
+        INSERT INTO stats_daily_rollups (user_id, stat_date, category_id, type, total_amount, transaction_count)
+        SELECT user_id, DATE(transaction_time), COALESCE(category_id, 0), type, SUM(amount), COUNT(*)
+        FROM transactions
+        WHERE user_id = :userId
+        GROUP BY user_id, DATE(transaction_time), COALESCE(category_id, 0), type
+        """;
+
+    private static final String RAW_BUCKETS_SQL = """
+        SELECT DATE(transaction_time) AS stat_date, COALESCE(category_id, 0) AS category_id, type,
+               SUM(amount) AS total_amount, COUNT(*) AS transaction_count
+        FROM transactions
+        WHERE user_id = :userId
+        GROUP BY DATE(transaction_time), COALESCE(category_id, 0), type
+        """;
+
+    // 锁定选中的交易行，直到批量修改提交，期间单条修改不会使差值错位
+    private static final String SELECTED_BUCKETS_SQL = """
+        SELECT DATE(transaction_time) AS stat_date, COALESCE(category_id, 0) AS category_id, type,
+               SUM(amount) AS total_amount, COUNT(*) AS transaction_count
+        FROM transactions
+        WHERE user_id = :userId AND id IN (:ids)
+        GROUP BY DATE(transaction_time), COALESCE(category_id, 0), type
+        FOR UPDATE
+        """;
+
+    private static final String ROLLUP_BUCKETS_SQL = """
+        SELECT stat_date, category_id, type, total_amount, transaction_count
+        FROM stats_daily_rollups
+        WHERE user_id = :userId AND transaction_count <> 0
+        """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public record TypeRow(TransactionType type, BigDecimal totalAmount, Long transactionCount)
+            implements TransactionRepository.TypeTotal {
+        @Override
+        public TransactionType getType() {
+            return type;
+        }
+
+        @Override
+        public BigDecimal getTotalAmount() {
+            return totalAmount;
+        }
+
+        @Override
+        public Long getTransactionCount() {
+            return transactionCount;
+        }
+    }
+
+    public record CategoryRow(Long categoryId, String categoryName, TransactionType type,
+                              BigDecimal totalAmount, Long transactionCount)
+            implements TransactionRepository.CategoryTotal {
+        @Override
+        public Long getCategoryId() {
+            return categoryId;
+        }
+
+        @Override
+        public String getCategoryName() {
+            return categoryName;
+        }
+
+        @Override
+        public TransactionType getType() {
+            return type;
+        }
+
+        @Override
+        public BigDecimal getTotalAmount() {
+            return totalAmount;
+        }
+
+        @Override
+        public Long getTransactionCount() {
+            return transactionCount;
+        }
+    }
+
+    public record BucketKey(LocalDate statDate, Long categoryId, TransactionType type) {
+    }
+
+    public record BucketValue(BigDecimal totalAmount, long transactionCount) {
+    }
+
+    /**
+     * 按差值累加一个桶；笔数归零的桶随即删除
+     */
+    public void applyDelta(Long userId, LocalDate statDate, Long categoryId, TransactionType type,
+                           BigDecimal amount, int count) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("userId", userId)
+                .addValue("statDate", Date.valueOf(statDate))
+                .addValue("categoryId", categoryId)
+                .addValue("type", type.name())
+                .addValue("amount", amount)
+                .addValue("count", count);
+        jdbcTemplate.update(UPSERT_SQL, params);
+        if (count < 0) {
+            jdbcTemplate.update(DELETE_EMPTY_SQL, params);
+        }
+    }
+
+    public List<TypeRow> sumByType(Long userId, LocalDate fromDate, LocalDate toDate) {
+        MapSqlParameterSource params = rangeParams(userId, fromDate, toDate);
+        return jdbcTemplate.query(SUM_BY_TYPE_SQL, params, (rs, rowNum) -> new TypeRow(
+                TransactionType.valueOf(rs.getString("type")),
+                rs.getBigDecimal("total_amount"),
+                rs.getLong("transaction_count")
+        ));
+    }
+
+    public List<CategoryRow> sumByCategory(Long userId, TransactionType type, LocalDate fromDate, LocalDate toDate) {
+        MapSqlParameterSource params = rangeParams(userId, fromDate, toDate)
+                .addValue("type", type != null ? type.name() : null);
+        return jdbcTemplate.query(SUM_BY_CATEGORY_SQL, params, (rs, rowNum) -> new CategoryRow(
+                rs.getLong("category_id"),
+                rs.getString("category_name"),
+                TransactionType.valueOf(rs.getString("type")),
+                rs.getBigDecimal("total_amount"),
+                rs.getLong("transaction_count")
+        ));
+    }
+
+    /**
+     * 用交易明细重建单个用户的汇总（调用方负责事务）
+     * @return 重建后的桶数
+     */
+    public int rebuildUser(Long userId) {
+        MapSqlParameterSource params = new MapSqlParameterSource("userId", userId);
+        jdbcTemplate.update(DELETE_USER_SQL, params);
+        return jdbcTemplate.update(REBUILD_USER_SQL, params);
+    }
+
+    /**
+     * 把某个分类的桶全部并入未分类（调用方负责事务，须与删除分类在同一事务中）
+     * @return 受影响的用户
+     */
+    public List<Long> mergeIntoUncategorized(Long categoryId) {
+        MapSqlParameterSource params = new MapSqlParameterSource("categoryId", categoryId);
+        List<Long> userIds = jdbcTemplate.queryForList(CATEGORY_USERS_SQL, params, Long.class);
+        if (!userIds.isEmpty()) {
+            jdbcTemplate.update(MERGE_CATEGORY_SQL, params);
+            jdbcTemplate.update(DELETE_CATEGORY_SQL, params);
+        }
+        return userIds;
+    }
+
+    public List<Long> findUserIds() {
+        return jdbcTemplate.getJdbcTemplate().queryForList("SELECT id FROM users ORDER BY id", Long.class);
+    }
+
+    /**
+     * 从交易明细实时聚合出的桶（一致性检查用）
+     */
+    public Map<BucketKey, BucketValue> loadRawBuckets(Long userId) {
+        return loadBuckets(RAW_BUCKETS_SQL, new MapSqlParameterSource("userId", userId));
+    }
+
+    /**
+     * 指定交易所属的桶（批量修改前调用，须在事务内）
+     */
+    public Map<BucketKey, BucketValue> loadRawBuckets(Long userId, Collection<Long> ids) {
+        return loadBuckets(SELECTED_BUCKETS_SQL, new MapSqlParameterSource("userId", userId).addValue("ids", ids));
+    }
+
+    /**
+     * 汇总表中的桶（一致性检查用）
+     */
+    public Map<BucketKey, BucketValue> loadRollupBuckets(Long userId) {
+        return loadBuckets(ROLLUP_BUCKETS_SQL, new MapSqlParameterSource("userId", userId));
+    }
+
+    private Map<BucketKey, BucketValue> loadBuckets(String sql, MapSqlParameterSource params) {
+        Map<BucketKey, BucketValue> buckets = new HashMap<>();
+        jdbcTemplate.query(sql, params, rs -> {
+            buckets.put(
+                    new BucketKey(
+                            rs.getDate("stat_date").toLocalDate(),
+                            rs.getLong("category_id"),
+                            TransactionType.valueOf(rs.getString("type"))
+                    ),
+                    new BucketValue(rs.getBigDecimal("total_amount"), rs.getLong("transaction_count"))
+            );
+        });
+        return buckets;
+    }
+
+    private MapSqlParameterSource rangeParams(Long userId, LocalDate fromDate, LocalDate toDate) {
+        return new MapSqlParameterSource()
+                .addValue("userId", userId)
+                .addValue("fromDate", Date.valueOf(fromDate != null ? fromDate : LocalDate.of(1970, 1, 1)))
+                .addValue("toDate", Date.valueOf(toDate != null ? toDate : LocalDate.of(9999, 12, 31)));
+    }
+}
@@ -0,0 +1,118 @@
+package com.easybill.repository;
+
+import com.easybill.dto.TimeSeriesDTO.Interval;
+import com.easybill.dto.TimeSeriesDTO.Split;
+import com.easybill.entity.TransactionType;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 趋势统计：在数据库中按时间桶（日/周/月）、分组和收支类型聚合，只返回聚合后的行
+ * 可从交易明细或日汇总表（stats_daily_rollups，不含账户维度）读取
+ */
+@Repository
+@RequiredArgsConstructor
+public class StatsTimeSeriesRepository {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public record BucketRow(LocalDate period, Long groupId, String groupName, TransactionType type,
+                            BigDecimal totalAmount, long transactionCount) {
+    }
+
+    /**
+     * 从交易明细聚合，统计 [startDate, endDate] 内的交易（按日期，含首尾两天）
+     */
+    public List<BucketRow> aggregateTransactions(Long userId, Interval interval, Split split, TransactionType type,
+                                                 LocalDate startDate, LocalDate endDate) {
+        String groupColumns;
+        String join;
+        switch (split) {
+            case CATEGORY -> {
+                groupColumns = "COALESCE(t.category_id, 0) AS group_id, c.name AS group_name";
+                join = "LEFT JOIN categories c ON c.id = t.category_id";
+            }
+            case ACCOUNT -> {
+                groupColumns = "COALESCE(t.account_id, 0) AS group_id, a.account_name AS group_name";
+                join = "LEFT JOIN accounts a ON a.id = t.account_id";
+            }
+            default -> {
+                groupColumns = "0 AS group_id, NULL AS group_name";
+                join = "";
+            }
+        }
+
+        String sql = "SELECT " + bucketExpression(interval, "DATE(t.transaction_time)") + " AS period, "
+                + groupColumns + ", t.type, SUM(t.amount) AS total_amount, COUNT(*) AS transaction_count "
+                + "FROM transactions t " + join + " "
+                + "WHERE t.user_id = :userId AND t.transaction_time >= :start AND t.transaction_time < :endExclusive "
+                + (type != null ? "AND t.type = :type " : "")
+                + "GROUP BY period, group_id, group_name, t.type ORDER BY period";
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("userId", userId)
+                .addValue("start", Timestamp.valueOf(startDate.atStartOfDay()))
+                .addValue("endExclusive", Timestamp.valueOf(endDate.plusDays(1).atStartOfDay()))
+                .addValue("type", type != null ? type.name() : null);
+        return query(sql, params);
+    }
+
+    /**
+     * 从日汇总表聚合（split 仅支持 NONE / CATEGORY）
+     */
+    public List<BucketRow> aggregateRollups(Long userId, Interval interval, Split split, TransactionType type,
+                                            LocalDate startDate, LocalDate endDate) {
+        if (split == Split.ACCOUNT) {
+            throw new IllegalArgumentException("日汇总表不包含账户维度");
+        }
+
+        String groupColumns = split == Split.CATEGORY
+                ? "r.category_id AS group_id, c.name AS group_name"
+                : "0 AS group_id, NULL AS group_name";
+        String join = split == Split.CATEGORY ? "LEFT JOIN categories c ON c.id = r.category_id" : "";
+
+        String sql = "SELECT " + bucketExpression(interval, "r.stat_date") + " AS period, "
+                + groupColumns + ", r.type, SUM(r.total_amount) AS total_amount, SUM(r.transaction_count) AS transaction_count "
+                + "FROM stats_daily_rollups r " + join + " "
+                + "WHERE r.user_id = :userId AND r.stat_date BETWEEN :startDate AND :endDate "
+                + (type != null ? "AND r.type = :type " : "")
+                + "GROUP BY period, group_id, group_name, r.type ORDER BY period";
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("userId", userId)
+                .addValue("startDate", Date.valueOf(startDate))
+                .addValue("endDate", Date.valueOf(endDate))
+                .addValue("type", type != null ? type.name() : null);
+        return query(sql, params);
+    }
+
+    private List<BucketRow> query(String sql, MapSqlParameterSource params) {
+        return jdbcTemplate.query(sql, params, (rs, rowNum) -> new BucketRow(
+                rs.getDate("period").toLocalDate(),
+                rs.getLong("group_id"),
+                rs.getString("group_name"),
+                TransactionType.valueOf(rs.getString("type")),
+                rs.getBigDecimal("total_amount"),
+                rs.getLong("transaction_count")
+        ));
+    }
+
+    /**
+     * 桶起始日期表达式：周以周一开始，月以 1 号开始
+     */
+    private String bucketExpression(Interval interval, String date) {
+        return switch (interval) {
+            case DAY -> date;
+            case WEEK -> "DATE_SUB(" + date + ", INTERVAL WEEKDAY(" + date + ") DAY)";
+            case MONTH -> "DATE_SUB(" + date + ", INTERVAL DAYOFMONTH(" + date + ") - 1 DAY)";
+        };
+    }
+}
@@ -0,0 +1,79 @@
+package com.easybill.repository;
+
+import com.easybill.entity.Transaction;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 交易批量写入（JDBC batch，配合 rewriteBatchedStatements 合并为多行 INSERT）
+ */
+@Repository
+@RequiredArgsConstructor
+public class TransactionBatchRepository {
+
+    // 不用 INSERT IGNORE：它会把外键、截断等错误也降级为警告并静默丢行；幂等键由调用方事先剔除
+    private static final String INSERT_SQL = """
+        INSERT INTO transactions (user_id, account_id, category_id, type, amount, merchant,
+                                         transaction_time, status, remark, idempotency_key, created_at, updated_at)
+        VALUES (:userId, :accountId, :categoryId, :type, :amount, :merchant,
+                :transactionTime, :status, :remark, :idempotencyKey, :createdAt, :createdAt)
+        """;
+
+    private static final String EXISTING_KEYS_SQL = """
+        SELECT idempotency_key FROM transactions WHERE idempotency_key IN (:keys)
+        """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * 查询已存在的幂等键
+     */
+    public Set<String> findExistingKeys(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(jdbcTemplate.queryForList(
+                EXISTING_KEYS_SQL, new MapSqlParameterSource("keys", keys), String.class));
+    }
+
+    /**
+     * 批量插入（不回填 ID）
+     * 幂等键冲突时抛出 DuplicateKeyException
+     * @return 每行的影响行数；合并为多行 INSERT 执行时为 Statement.SUCCESS_NO_INFO
+     */
+    public int[] insertAll(List<Transaction> transactions) {
+        if (transactions.isEmpty()) {
+            return new int[0];
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        SqlParameterSource[] params = new SqlParameterSource[transactions.size()];
+        for (int i = 0; i < transactions.size(); i++) {
+            Transaction transaction = transactions.get(i);
+            transaction.setCreatedAt(now);
+            transaction.setUpdatedAt(now);
+            params[i] = new MapSqlParameterSource()
+                    .addValue("userId", transaction.getUser().getId())
+                    .addValue("accountId", transaction.getAccount() != null ? transaction.getAccount().getId() : null)
+                    .addValue("categoryId", transaction.getCategory() != null ? transaction.getCategory().getId() : null)
+                    .addValue("type", transaction.getType().name())
+                    .addValue("amount", transaction.getAmount())
+                    .addValue("merchant", transaction.getMerchant())
+                    .addValue("transactionTime", transaction.getTransactionTime())
+                    .addValue("status", transaction.getStatus().name())
+                    .addValue("remark", transaction.getRemark())
+                    .addValue("idempotencyKey", transaction.getIdempotencyKey())
+                    .addValue("createdAt", now);
+        }
+        return jdbcTemplate.batchUpdate(INSERT_SQL, params);
+    }
+}
@@ -1,18 +1,49 @@
 package com.easybill.repository;
 
+import com.easybill.entity.Account;
+import com.easybill.entity.Category;
 import com.easybill.entity.Transaction;
 import com.easybill.entity.TransactionStatus;
 import com.easybill.entity.TransactionType;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, Long>, JpaSpecificationExecutor<Transaction> {
     
+    /**
+     * 按收支类型汇总的统计行
+     */
+    interface TypeTotal {
+        TransactionType getType();
+        BigDecimal getTotalAmount();
+        Long getTransactionCount();
+    }
+    
+    /**
+     * 按分类和收支类型汇总的统计行
+     */
+    interface CategoryTotal {
+        Long getCategoryId();
+        String getCategoryName();
+        TransactionType getType();
+        BigDecimal getTotalAmount();
+        Long getTransactionCount();
+    }
+    
     List<Transaction> findByUser_IdOrderByTransactionTimeDesc(Long userId);
     
     List<Transaction> findByUser_IdAndStatus(Long userId, TransactionStatus status);
@@ -25,5 +56,103 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>,
     
     Optional<Transaction> findByIdempotencyKey(String idempotencyKey);
     
+    Optional<Transaction> findByIdempotencyKeyAndUser_Id(String idempotencyKey, Long userId);
+    
+    /**
+     * 分页查询交易，分类和账户在同一条 SQL 中 LEFT JOIN 取回，避免转换 DTO 时逐行懒加载
+     */
+    @Override
+    @EntityGraph(attributePaths = {"category", "account"})
+    Page<Transaction> findAll(Specification<Transaction> spec, Pageable pageable);
+    
+    /**
+     * 按 ID 查询交易，同时取回分类和账户
+     */
+    @EntityGraph(attributePaths = {"category", "account"})
+    Optional<Transaction> findWithDetailsById(Long id);
+    
+    Optional<Transaction> findFirstByRawLogId(Long rawLogId);
+    
+    Optional<Transaction> findFirstByRawLogIdAndUser_Id(Long rawLogId, Long userId);
+    
     boolean existsByIdempotencyKey(String idempotencyKey);
+    
+    /**
+     * 按收支类型汇总（startDate、endDate 均为空时统计全部）
+     */
+    @Query("SELECT t.type AS type, SUM(t.amount) AS totalAmount, COUNT(t) AS transactionCount " +
+           "FROM Transaction t WHERE t.user.id = :userId " +
+           "AND (:startDate IS NULL OR :endDate IS NULL OR t.transactionTime BETWEEN :startDate AND :endDate) " +
+           "GROUP BY t.type")
+    List<TypeTotal> sumByType(
+        @Param("userId") Long userId,
+        @Param("startDate") LocalDateTime startDate,
+        @Param("endDate") LocalDateTime endDate
+    );
+    
+    /**
+     * 按分类汇总，未分类的交易不参与（type 为空时不限收支类型）
+     */
+    @Query("SELECT c.id AS categoryId, c.name AS categoryName, t.type AS type, " +
+           "SUM(t.amount) AS totalAmount, COUNT(t) AS transactionCount " +
+           "FROM Transaction t JOIN t.category c WHERE t.user.id = :userId " +
+           "AND (:type IS NULL OR t.type = :type) " +
+           "AND (:startDate IS NULL OR :endDate IS NULL OR t.transactionTime BETWEEN :startDate AND :endDate) " +
+           "GROUP BY c.id, c.name, t.type")
+    List<CategoryTotal> sumByCategory(
+        @Param("userId") Long userId,
+        @Param("type") TransactionType type,
+        @Param("startDate") LocalDateTime startDate,
+        @Param("endDate") LocalDateTime endDate
+    );
+    
+    /**
+     * 批量修改状态（只作用于该用户的交易）
+     * @return 实际更新的行数
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Transaction t SET t.status = :status, t.updatedAt = :now " +
+           "WHERE t.user.id = :userId AND t.id IN :ids")
+    int updateStatusByUserIdAndIdIn(
+        @Param("userId") Long userId,
+        @Param("ids") Collection<Long> ids,
+        @Param("status") TransactionStatus status,
+        @Param("now") LocalDateTime now
+    );
+    
+    /**
+     * 批量修改分类（category 为空时清除分类）
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Transaction t SET t.category = :category, t.updatedAt = :now " +
+           "WHERE t.user.id = :userId AND t.id IN :ids")
+    int updateCategoryByUserIdAndIdIn(
+        @Param("userId") Long userId,
+        @Param("ids") Collection<Long> ids,
+        @Param("category") Category category,
+        @Param("now") LocalDateTime now
+    );
+    
+    /**
+     * 批量修改账户（account 为空时清除账户）
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Transaction t SET t.account = :account, t.updatedAt = :now " +
+           "WHERE t.user.id = :userId AND t.id IN :ids")
+    int updateAccountByUserIdAndIdIn(
+        @Param("userId") Long userId,
+        @Param("ids") Collection<Long> ids,
+        @Param("account") Account account,
+        @Param("now") LocalDateTime now
+    );
+    
+    /**
+     * 批量删除
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM Transaction t WHERE t.user.id = :userId AND t.id IN :ids")
+    int deleteByUserIdAndIdIn(
+        @Param("userId") Long userId,
+        @Param("ids") Collection<Long> ids
+    );
 }
@@ -1,23 +1,37 @@
 package com.easybill.service;
 
 import com.easybill.dto.ParsedTransaction;
+import com.easybill.dto.SmsWebhookRequest;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.chat.prompt.Prompt;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
 @Slf4j
 @Service
 public class AIParserService {
     
     @Autowired
-    private ChatClient.Builder chatClientBuilder;
+    private LlmClient llmClient;
     
     @Autowired
     private ObjectMapper objectMapper;
     
+    @Autowired
+    private SmsRuleParser smsRuleParser;
+    
+    @Autowired
+    private ParseCacheService parseCacheService;
+    
     // 默认 Prompt 模板
     private static final String DEFAULT_PROMPT = """
         你是一个专业的银行短信解析助手。请从以下短信中提取交易信息，返回 JSON 格式：
@@ -41,10 +55,46 @@ public class AIParserService {
         短信内容：
         """;
     
+    // 批量解析 Prompt 模板
+    private static final String BATCH_PROMPT = """
+        你是一个专业的银行短信解析助手。下面有多条短信，每条以 [序号] 开头。
+        请逐条提取交易信息，返回 JSON 数组，数组中每个元素格式为：
+        {
+          "index": 短信序号（整数）,
+          "type": "INCOME 或 EXPENSE",
+          "amount": "金额（数字）",
+          "merchant": "商户名称",
+          "cardLastFour": "卡号尾号（如有）",
+          "transactionTime": "交易时间（ISO 8601 格式）",
+          "categoryHint": "分类提示（如：餐饮、交通）"
+        }
+        
+        注意：
+        1. 金额必须是正数
+        2. 如果短信中提到"消费"、"支出"，type 为 EXPENSE
+        3. 如果短信中提到"存入"、"到账"，type 为 INCOME
+        4. 商户名称尽量完整提取
+        5. 如果无法提取某个字段，返回 null
+        6. 每条短信对应一个元素，index 与短信序号一致
+        7. 只返回 JSON 数组，不要有其他文字
+        
+        短信列表：
+        """;
+    
+    // Prompt 指纹，作为解析缓存键的一部分，修改 Prompt 后旧缓存自动失效
+    private static final String PROMPT_FINGERPRINT = DigestUtils.md5Hex(DEFAULT_PROMPT);
+    
     /**
      * 解析短信内容
+     * 先尝试规则快速解析，未命中再调用 AI
+     * @throws LlmUnavailableException AI 服务暂不可用，调用方应延后解析
      */
     public ParsedTransaction parse(String rawContent, String sender) {
+        Optional<ParsedTransaction> local = parseLocally(rawContent, sender);
+        if (local.isPresent()) {
+            return local.get();
+        }
+        
         try {
             log.info("开始解析短信，发件人: {}", sender);
             
@@ -52,34 +102,122 @@ public class AIParserService {
             String prompt = DEFAULT_PROMPT + rawContent;
             
             // 调用 DeepSeek API
-            ChatClient chatClient = chatClientBuilder.build();
-            String response = chatClient.prompt()
-                .user(prompt)
-                .call()
-                .content();
+            String response = llmClient.call(prompt);
             
             log.info("AI 解析结果: {}", response);
             
-            // 清理响应（移除可能的 markdown 代码块标记）
-            String cleanedResponse = response
-                .replaceAll("```json\\s*", "")
-                .replaceAll("```\\s*", "")
-                .trim();
+            ParsedTransaction result = readParsedTransaction(response);
             
-            // 解析 JSON
-            ParsedTransaction result = objectMapper.readValue(
-                cleanedResponse, 
-                ParsedTransaction.class
-            );
+            // 无效结果不写入缓存，返回 null 走解析失败流程，避免同类短信一直命中错误结果
+            if (!isValid(result)) {
+                log.warn("AI 解析结果无效，不写入缓存");
+                return null;
+            }
             
+            parseCacheService.put(PROMPT_FINGERPRINT, rawContent, sender, result);
             return result;
             
+        } catch (LlmUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             log.error("AI 解析失败: {}", e.getMessage(), e);
             return null;
         }
     }
     
+    /**
+     * 不调用 AI 的本地解析：规则快速解析 + 解析缓存
+     */
+    public Optional<ParsedTransaction> parseLocally(String rawContent, String sender) {
+        Optional<ParsedTransaction> ruleResult = smsRuleParser.parse(rawContent, sender);
+        if (ruleResult.isPresent()) {
+            return ruleResult;
+        }
+        return parseCacheService.get(PROMPT_FINGERPRINT, rawContent, sender);
+    }
+    
+    /**
+     * 批量解析：多条短信合并为一次 AI 调用
+     * @return 与入参顺序一致的结果列表，解析失败或校验不通过的位置为 null
+     */
+    public List<ParsedTransaction> parseBatch(List<SmsWebhookRequest> items) {
+        List<ParsedTransaction> results = new ArrayList<>(Collections.nCopies(items.size(), null));
+        try {
+            log.info("开始批量解析短信，条数: {}", items.size());
+            
+            StringBuilder prompt = new StringBuilder(BATCH_PROMPT);
+            for (int i = 0; i < items.size(); i++) {
+                prompt.append('[').append(i).append("] ")
+                    .append(items.get(i).getRawContent().replace('\n', ' '))
+                    .append('\n');
+            }
+            
+            String response = llmClient.call(prompt.toString());
+            
+            log.info("AI 批量解析结果: {}", response);
+            
+            JsonNode array = objectMapper.readTree(stripCodeFence(response));
+            if (!array.isArray()) {
+                log.warn("AI 批量解析结果不是 JSON 数组");
+                return results;
+            }
+            
+            for (JsonNode node : array) {
+                if (!node.isObject() || !node.path("index").canConvertToInt()) {
+                    continue;
+                }
+                int index = node.get("index").asInt();
+                if (index < 0 || index >= items.size() || results.get(index) != null) {
+                    continue;
+                }
+                ((ObjectNode) node).remove("index");
+                
+                try {
+                    ParsedTransaction parsed = objectMapper.treeToValue(node, ParsedTransaction.class);
+                    if (isValid(parsed)) {
+                        results.set(index, parsed);
+                        SmsWebhookRequest item = items.get(index);
+                        parseCacheService.put(PROMPT_FINGERPRINT, item.getRawContent(), item.getSender(), parsed);
+                    }
+                } catch (Exception e) {
+                    log.debug("批量解析第 {} 条结果无效: {}", index, e.getMessage());
+                }
+            }
+        } catch (LlmUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("AI 批量解析失败: {}", e.getMessage(), e);
+        }
+        return results;
+    }
+    
+    /**
+     * 把 AI 返回的单条结果反序列化为交易
+     */
+    ParsedTransaction readParsedTransaction(String response) throws JsonProcessingException {
+        return objectMapper.readValue(stripCodeFence(response), ParsedTransaction.class);
+    }
+    
+    /**
+     * 清理响应（移除可能的 markdown 代码块标记）
+     */
+    static String stripCodeFence(String response) {
+        return response
+            .replaceAll("```json\\s*", "")
+            .replaceAll("```\\s*", "")
+            .trim();
+    }
+    
+    /**
+     * 校验解析结果：金额为正数且类型合法
+     */
+    private boolean isValid(ParsedTransaction parsed) {
+        return parsed != null
+            && parsed.getAmount() != null
+            && parsed.getAmount().signum() > 0
+            && ("INCOME".equals(parsed.getType()) || "EXPENSE".equals(parsed.getType()));
+    }
+    
     /**
      * 使用自定义 Prompt 模板解析
      */
@@ -87,18 +225,9 @@ public class AIParserService {
         try {
             String prompt = promptTemplate + "\n\n短信内容：" + rawContent;
             
-            ChatClient chatClient = chatClientBuilder.build();
-            String response = chatClient.prompt()
-                .user(prompt)
-                .call()
-                .content();
-            
-            String cleanedResponse = response
-                .replaceAll("```json\\s*", "")
-                .replaceAll("```\\s*", "")
-                .trim();
+            String response = llmClient.call(prompt);
             
-            return objectMapper.readValue(cleanedResponse, ParsedTransaction.class);
+            return readParsedTransaction(response);
             
         } catch (Exception e) {
             log.error("AI 解析失败（自定义模板）: {}", e.getMessage(), e);
@@ -0,0 +1,205 @@
+package com.easybill.service;
+
+import com.easybill.entity.User;
+import com.easybill.event.ApiKeyRotatedEvent;
+import com.easybill.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Webhook API Key 认证
+ * API Key 以 SHA-256 摘要为键缓存到本地 LRU，命中时不查询 users 表；
+ * 无效的 Key 也短时缓存，避免被反复用来穿透数据库。
+ * 轮换 Key 在事务提交后使旧 Key 失效，并通过 Redis 频道通知其他实例清除各自的缓存
+ */
+@Slf4j
+@Service
+public class ApiKeyAuthService implements MetricsSource {
+
+    private static final String CHANNEL = "easybill:api-key-invalidations";
+
+    private final UserRepository userRepository;
+    private final RedisTemplate<String, String> redisTemplate;
+    private final boolean broadcastEnabled;
+    private final int maxSize;
+    private final long ttlMs;
+    private final long negativeTtlMs;
+
+    // API Key 摘要 -> 用户（null 表示无效 Key）
+    private final Map<String, CachedUser> cache;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder broadcastErrors = new LongAdder();
+
+    public ApiKeyAuthService(
+            UserRepository userRepository,
+            RedisTemplate<String, String> redisTemplate,
+            RedisMessageListenerContainer listenerContainer,
+            @Value("${easybill.webhook.api-key-cache.broadcast-enabled:true}") boolean broadcastEnabled,
+            @Value("${easybill.webhook.api-key-cache.max-size:10000}") int maxSize,
+            @Value("${easybill.webhook.api-key-cache.ttl-seconds:600}") long ttlSeconds,
+            @Value("${easybill.webhook.api-key-cache.negative-ttl-seconds:30}") long negativeTtlSeconds
+    ) {
+        this.userRepository = userRepository;
+        this.redisTemplate = redisTemplate;
+        this.broadcastEnabled = broadcastEnabled;
+        this.maxSize = maxSize;
+        this.ttlMs = TimeUnit.SECONDS.toMillis(ttlSeconds);
+        this.negativeTtlMs = TimeUnit.SECONDS.toMillis(negativeTtlSeconds);
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedUser> eldest) {
+                if (size() > ApiKeyAuthService.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        if (broadcastEnabled) {
+            // 频道中只传 Key 的摘要；自己发布的消息也会收到，重复删除无副作用
+            listenerContainer.addMessageListener(
+                    (message, pattern) -> removeCached(new String(message.getBody(), StandardCharsets.UTF_8)),
+                    new ChannelTopic(CHANNEL));
+        }
+    }
+
+    /**
+     * 按 API Key 查找用户
+     * @return Key 无效时返回 empty
+     */
+    public Optional<User> authenticate(String apiKey) {
+        if (apiKey == null || apiKey.isBlank()) {
+            rejected.increment();
+            return Optional.empty();
+        }
+
+        String digest = DigestUtils.sha256Hex(apiKey);
+        long now = System.currentTimeMillis();
+        CachedUser cached = getCached(digest, now);
+        if (cached != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            User user = userRepository.findByApiKey(apiKey).orElse(null);
+            cached = new CachedUser(user, now + (user != null ? ttlMs : negativeTtlMs));
+            putCached(digest, cached);
+        }
+
+        if (cached.user() == null) {
+            rejected.increment();
+            return Optional.empty();
+        }
+        return Optional.of(cached.user());
+    }
+
+    /**
+     * 轮换 Key 的事务提交后使旧 Key 失效
+     * 提交前失效的话，并发请求可能在提交前把旧 Key 重新读入缓存
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onApiKeyRotated(ApiKeyRotatedEvent event) {
+        invalidate(event.oldApiKey());
+    }
+
+    /**
+     * 使某个 API Key 的缓存失效（轮换或停用 Key 时调用），并通知其他实例
+     */
+    public void invalidate(String apiKey) {
+        if (apiKey == null) {
+            return;
+        }
+        String digest = DigestUtils.sha256Hex(apiKey);
+        removeCached(digest);
+        if (broadcastEnabled) {
+            try {
+                redisTemplate.convertAndSend(CHANNEL, digest);
+            } catch (Exception e) {
+                // 广播失败时其他实例的缓存最迟在 ttl-seconds 后过期
+                broadcastErrors.increment();
+                log.warn("API Key 失效通知发布失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 使某个用户的全部缓存失效（用户信息变更或删除时调用）
+     */
+    public void invalidateUser(Long userId) {
+        synchronized (cache) {
+            cache.values().removeIf(cached -> cached.user() != null && userId.equals(cached.user().getId()));
+        }
+    }
+
+    private CachedUser getCached(String digest, long now) {
+        synchronized (cache) {
+            CachedUser cached = cache.get(digest);
+            if (cached == null) {
+                return null;
+            }
+            if (cached.expiresAt() <= now) {
+                cache.remove(digest);
+                return null;
+            }
+            return cached;
+        }
+    }
+
+    private void removeCached(String digest) {
+        synchronized (cache) {
+            cache.remove(digest);
+        }
+    }
+
+    private void putCached(String digest, CachedUser cached) {
+        synchronized (cache) {
+            cache.put(digest, cached);
+        }
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "webhook-auth";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        int size;
+        synchronized (cache) {
+            size = cache.size();
+        }
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("size", size);
+        metrics.put("maxSize", maxSize);
+        metrics.put("hits", hitCount);
+        metrics.put("misses", misses.sum());
+        metrics.put("hitRate", total > 0 ? (double) hitCount / total : 0.0);
+        metrics.put("rejected", rejected.sum());
+        metrics.put("evictions", evictions.sum());
+        metrics.put("broadcastEnabled", broadcastEnabled);
+        metrics.put("broadcastErrors", broadcastErrors.sum());
+        return metrics;
+    }
+
+    private record CachedUser(User user, long expiresAt) {
+    }
+}
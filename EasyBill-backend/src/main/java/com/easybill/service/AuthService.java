@@ -4,14 +4,20 @@ import com.easybill.dto.LoginRequest;
 import com.easybill.dto.LoginResponse;
 import com.easybill.dto.UserDTO;
 import com.easybill.entity.User;
+import com.easybill.event.ApiKeyRotatedEvent;
 import com.easybill.repository.UserRepository;
 import com.easybill.util.JwtUtil;
 import lombok.RequiredArgsConstructor;
+import org.apache.commons.codec.binary.Hex;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.security.SecureRandom;
 
 @Service
 @RequiredArgsConstructor
@@ -20,6 +26,10 @@ public class AuthService {
     private final UserRepository userRepository;
     private final JwtUtil jwtUtil;
     private final AuthenticationManager authenticationManager;
+    private final JwtTokenService jwtTokenService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
 
     public LoginResponse login(LoginRequest request) {
         try {
@@ -74,4 +84,36 @@ public class AuthService {
                 .apiKey(user.getApiKey())
                 .build();
     }
+
+    /**
+     * 轮换 Webhook API Key：生成新 Key
+     * 旧 Key 的认证缓存在事务提交后失效（其他实例经 Redis 通知清除，通知失败时最迟在缓存 TTL 后失效）
+     */
+    @Transactional
+    public UserDTO rotateApiKey(String username) {
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+
+        byte[] bytes = new byte[24];
+        RANDOM.nextBytes(bytes);
+        String oldApiKey = user.getApiKey();
+        user.setApiKey("eb_" + Hex.encodeHexString(bytes));
+        userRepository.save(user);
+        eventPublisher.publishEvent(new ApiKeyRotatedEvent(user.getId(), oldApiKey));
+
+        return UserDTO.builder()
+                .id(user.getId())
+                .username(user.getUsername())
+                .email(user.getEmail())
+                .phone(user.getPhone())
+                .apiKey(user.getApiKey())
+                .build();
+    }
+
+    /**
+     * 退出登录：注销当前 token
+     */
+    public void logout(String token) {
+        jwtTokenService.revokeToken(token);
+    }
 }
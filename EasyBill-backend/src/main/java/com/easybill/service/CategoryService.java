@@ -3,13 +3,17 @@ package com.easybill.service;
 import com.easybill.dto.CategoryCreateRequest;
 import com.easybill.dto.CategoryDTO;
 import com.easybill.entity.Category;
+import com.easybill.event.TransactionChangedEvent;
 import com.easybill.repository.CategoryRepository;
 import com.easybill.repository.TransactionRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -18,6 +22,8 @@ public class CategoryService {
 
     private final CategoryRepository categoryRepository;
     private final TransactionRepository transactionRepository;
+    private final StatsRollupService statsRollupService;
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      * 获取用户的所有分类（包括系统预置）
@@ -102,6 +108,7 @@ public class CategoryService {
 
     /**
      * 删除分类
+     * 交易的 category_id 由外键置空，统计汇总中该分类的桶在同一事务内并入未分类
      */
     @Transactional
     public void deleteCategory(Long id, Long userId) {
@@ -117,7 +124,12 @@ public class CategoryService {
             throw new RuntimeException("Unauthorized access");
         }
         
+        Set<Long> affectedUserIds = new LinkedHashSet<>(statsRollupService.recordCategoryDeleted(id));
         categoryRepository.delete(category);
+        
+        // 分类统计和交易列表中的分类名都已变化，提交后使相关用户的缓存失效
+        affectedUserIds.add(userId);
+        affectedUserIds.forEach(affected -> eventPublisher.publishEvent(new TransactionChangedEvent(affected)));
     }
 
     /**
@@ -0,0 +1,56 @@
+package com.easybill.service;
+
+import com.easybill.repository.IdempotencyKeyRepository;
+import com.easybill.repository.TransactionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+/**
+ * 数据库幂等性存储
+ * 以 INSERT IGNORE 写入 idempotency_keys 主键原子占用幂等键，并发请求只有一个能占用成功；
+ * 建表前已入库的交易仍由 transactions.idempotency_key 判断
+ */
+@Slf4j
+@Component
+public class DatabaseIdempotencyStore implements IdempotencyStore {
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Value("${easybill.idempotency.database.retention-days:30}")
+    private int retentionDays;
+
+    @Override
+    public String getName() {
+        return "database";
+    }
+
+    @Override
+    public boolean putIfAbsent(String key) {
+        return idempotencyKeyRepository.claim(key) && !transactionRepository.existsByIdempotencyKey(key);
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return idempotencyKeyRepository.exists(key) || transactionRepository.existsByIdempotencyKey(key);
+    }
+
+    /**
+     * 清理过期的幂等键（已入库的交易仍受唯一索引保护）
+     */
+    @Scheduled(cron = "${easybill.idempotency.database.purge-cron:0 45 3 * * *}")
+    public void purgeExpired() {
+        int deleted = idempotencyKeyRepository.deleteCreatedBefore(LocalDateTime.now().minusDays(retentionDays));
+        if (deleted > 0) {
+            log.info("已清理过期幂等键 {} 条", deleted);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.easybill.service;
+
+import com.easybill.entity.RawSmsLog;
+import com.easybill.entity.User;
+import com.easybill.repository.RawSmsLogBatchRepository;
+import com.easybill.repository.RawSmsLogRepository;
+import com.easybill.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 延后解析恢复
+ * AI 服务不可用时短信以 DEFERRED 状态留在 raw_sms_logs，
+ * 熔断器恢复后按 ID 顺序分批重新投递到异步解析流水线；
+ * 调用失败导致的延后按 next_retry_at 退避，次数用完后由 SmsProcessingService 转为 ERROR
+ */
+@Slf4j
+@Service
+public class DeferredParseScheduler implements MetricsSource {
+
+    private static final String DEFERRED = "DEFERRED";
+    private static final String PENDING = "PENDING";
+
+    private final RawSmsLogRepository rawSmsLogRepository;
+    private final RawSmsLogBatchRepository rawSmsLogBatchRepository;
+    private final UserRepository userRepository;
+    private final SmsIngestionService smsIngestionService;
+    private final LlmClient llmClient;
+    private final int batchSize;
+
+    private final LongAdder resubmittedCount = new LongAdder();
+
+    public DeferredParseScheduler(
+            RawSmsLogRepository rawSmsLogRepository,
+            RawSmsLogBatchRepository rawSmsLogBatchRepository,
+            UserRepository userRepository,
+            SmsIngestionService smsIngestionService,
+            LlmClient llmClient,
+            @Value("${easybill.llm.deferred.batch-size:50}") int batchSize
+    ) {
+        this.rawSmsLogRepository = rawSmsLogRepository;
+        this.rawSmsLogBatchRepository = rawSmsLogBatchRepository;
+        this.userRepository = userRepository;
+        this.smsIngestionService = smsIngestionService;
+        this.llmClient = llmClient;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${easybill.llm.deferred.poll-interval-ms:10000}")
+    public void resubmitDeferred() {
+        // 熔断半开时只投递剩余的探测名额，确认恢复（关闭）后才按整批投递
+        int limit = llmClient.permittedCalls(batchSize);
+        if (limit <= 0) {
+            return;
+        }
+
+        List<RawSmsLog> logs = rawSmsLogRepository.findDue(DEFERRED, LocalDateTime.now(), PageRequest.of(0, limit));
+        if (logs.isEmpty()) {
+            return;
+        }
+
+        Map<Long, Optional<User>> users = new HashMap<>();
+        int resubmitted = 0;
+        for (RawSmsLog smsLog : logs) {
+            // 条件更新抢占：其他实例已取走的日志跳过，避免重复投递
+            if (rawSmsLogRepository.updateStatusIf(smsLog.getId(), DEFERRED, PENDING) == 0) {
+                continue;
+            }
+            smsLog.setParseStatus(PENDING);
+
+            Optional<User> user = users.computeIfAbsent(smsLog.getUserId(), userRepository::findById);
+            if (user.isEmpty()) {
+                smsLog.setParseStatus("ERROR");
+                smsLog.setErrorMessage("用户不存在");
+                rawSmsLogBatchRepository.updateStatusAll(List.of(smsLog));
+                continue;
+            }
+            if (!smsIngestionService.resubmit(user.get(), smsLog)) {
+                // 解析队列已满，已抢占但未投递的改回 DEFERRED，留待下一轮
+                smsLog.setParseStatus(DEFERRED);
+                rawSmsLogBatchRepository.updateStatusAll(List.of(smsLog));
+                break;
+            }
+            resubmitted++;
+        }
+
+        resubmittedCount.add(resubmitted);
+        if (resubmitted > 0) {
+            log.info("已重新投递延后解析的短信 {} 条", resubmitted);
+        }
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "llm-deferred";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("deferred", rawSmsLogRepository.countByParseStatus(DEFERRED));
+        metrics.put("resubmitted", resubmittedCount.sum());
+        return metrics;
+    }
+}
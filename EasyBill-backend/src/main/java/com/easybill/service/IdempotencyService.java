@@ -1,27 +1,83 @@
 package com.easybill.service;
 
+import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.codec.digest.DigestUtils;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import java.math.BigDecimal;
-import java.util.concurrent.TimeUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * 幂等性检查
+ * 按 easybill.idempotency.stores 的顺序使用存储（默认 redis,database），
+ * 存储异常时在冷却时间内跳过它并切换到下一个；全部不可用时放行，由交易表唯一索引兜底
+ */
+@Slf4j
 @Service
-public class IdempotencyService {
+public class IdempotencyService implements MetricsSource {
     
-    @Autowired
-    private RedisTemplate<String, String> redisTemplate;
+    private final List<IdempotencyStore> stores;
+    private final long cooldownMs;
+    private final boolean legacyKeyCheckEnabled;
     
-    private static final String IDEMPOTENCY_PREFIX = "easybill:idempotency:";
-    private static final long EXPIRATION_DAYS = 7;
+    // 存储名称 -> 恢复可用的时间戳
+    private final Map<String, Long> unavailableUntil = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> failures = new ConcurrentHashMap<>();
+    private final LongAdder failovers = new LongAdder();
+    private final LongAdder unchecked = new LongAdder();
+    private final LongAdder legacyMatches = new LongAdder();
+    
+    public IdempotencyService(
+            List<IdempotencyStore> availableStores,
+            @Value("${easybill.idempotency.stores:redis,database}") List<String> storeNames,
+            @Value("${easybill.idempotency.failover-cooldown-ms:30000}") long cooldownMs,
+            @Value("${easybill.idempotency.legacy-key-check-enabled:true}") boolean legacyKeyCheckEnabled
+    ) {
+        List<IdempotencyStore> ordered = new ArrayList<>();
+        for (String name : storeNames) {
+            IdempotencyStore store = availableStores.stream()
+                .filter(s -> s.getName().equals(name.trim()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("未知的幂等性存储: " + name));
+            ordered.add(store);
+            failures.put(store.getName(), new LongAdder());
+        }
+        if (ordered.isEmpty()) {
+            throw new IllegalArgumentException("easybill.idempotency.stores 不能为空");
+        }
+        this.stores = List.copyOf(ordered);
+        this.cooldownMs = cooldownMs;
+        this.legacyKeyCheckEnabled = legacyKeyCheckEnabled;
+        log.info("幂等性存储: {}", storeNames);
+    }
     
     /**
      * 生成幂等性键
-     * MD5(手机尾号 + 交易金额 + 商户名 + 原始短信全文)
+     * MD5(用户 ID + 手机尾号 + 交易金额 + 商户名 + 原始短信全文)，不同用户收到相同短信时互不影响
      */
-    public String generateKey(String phoneLastFour, BigDecimal amount, 
+    public String generateKey(Long userId, String phoneLastFour, BigDecimal amount, 
                              String merchant, String rawContent) {
+        String raw = userId + "\n" +
+                    (phoneLastFour != null ? phoneLastFour : "") +
+                    amount.toString() +
+                    (merchant != null ? merchant : "") +
+                    rawContent;
+        return DigestUtils.md5Hex(raw);
+    }
+    
+    /**
+     * 生成旧格式的幂等性键（不含用户 ID），过渡期内用于识别升级前已入库的交易
+     * @return 未开启旧键检查时返回 null
+     */
+    public String generateLegacyKey(String phoneLastFour, BigDecimal amount, String merchant, String rawContent) {
+        if (!legacyKeyCheckEnabled) {
+            return null;
+        }
         String raw = (phoneLastFour != null ? phoneLastFour : "") +
                     amount.toString() +
                     (merchant != null ? merchant : "") +
@@ -29,22 +85,91 @@ public class IdempotencyService {
         return DigestUtils.md5Hex(raw);
     }
     
+    /**
+     * 记录一次旧格式键命中，命中数长期为 0 后即可关闭旧键检查
+     */
+    public void recordLegacyMatch() {
+        legacyMatches.increment();
+    }
+    
     /**
      * 检查是否重复
      * @return true 如果是新记录，false 如果已存在
      */
     public boolean checkAndSet(String key) {
-        String redisKey = IDEMPOTENCY_PREFIX + key;
-        Boolean result = redisTemplate.opsForValue()
-            .setIfAbsent(redisKey, "1", EXPIRATION_DAYS, TimeUnit.DAYS);
-        return Boolean.TRUE.equals(result);
+        for (IdempotencyStore store : availableStores()) {
+            try {
+                return store.putIfAbsent(key);
+            } catch (Exception e) {
+                markUnavailable(store, e);
+            }
+        }
+        // 全部存储不可用时放行：重复交易由 transactions.idempotency_key 唯一索引拦截
+        unchecked.increment();
+        log.warn("幂等性存储全部不可用，未检查幂等性键: {}", key);
+        return true;
     }
     
     /**
      * 检查是否存在
      */
     public boolean exists(String key) {
-        String redisKey = IDEMPOTENCY_PREFIX + key;
-        return Boolean.TRUE.equals(redisTemplate.hasKey(redisKey));
+        for (IdempotencyStore store : availableStores()) {
+            try {
+                return store.exists(key);
+            } catch (Exception e) {
+                markUnavailable(store, e);
+            }
+        }
+        return false;
+    }
+    
+    private List<IdempotencyStore> availableStores() {
+        long now = System.currentTimeMillis();
+        List<IdempotencyStore> available = new ArrayList<>(stores.size());
+        for (IdempotencyStore store : stores) {
+            Long until = unavailableUntil.get(store.getName());
+            if (until == null || until <= now) {
+                available.add(store);
+            }
+        }
+        // 全部处于冷却期时仍按顺序尝试，尽快发现恢复
+        return available.isEmpty() ? stores : available;
+    }
+    
+    private void markUnavailable(IdempotencyStore store, Exception e) {
+        failures.get(store.getName()).increment();
+        failovers.increment();
+        Long previous = unavailableUntil.put(store.getName(), System.currentTimeMillis() + cooldownMs);
+        if (previous == null || previous <= System.currentTimeMillis()) {
+            log.warn("幂等性存储 {} 不可用，暂时切换到下一个: {}", store.getName(), e.getMessage());
+        }
+    }
+    
+    @Override
+    public String getMetricsName() {
+        return "idempotency";
+    }
+    
+    @Override
+    public Map<String, Object> getMetrics() {
+        long now = System.currentTimeMillis();
+        Map<String, Object> storeMetrics = new LinkedHashMap<>();
+        for (IdempotencyStore store : stores) {
+            Long until = unavailableUntil.get(store.getName());
+            storeMetrics.put(store.getName(), Map.of(
+                "available", until == null || until <= now,
+                "failures", failures.get(store.getName()).sum()
+            ));
+        }
+        
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("activeStore", availableStores().get(0).getName());
+        metrics.put("stores", storeMetrics);
+        metrics.put("failovers", failovers.sum());
+        metrics.put("unchecked", unchecked.sum());
+        metrics.put("legacyKeyCheckEnabled", legacyKeyCheckEnabled);
+        metrics.put("legacyMatches", legacyMatches.sum());
+        return metrics;
     }
 }
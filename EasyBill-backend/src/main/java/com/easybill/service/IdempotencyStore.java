@@ -0,0 +1,21 @@
+package com.easybill.service;
+
+/**
+ * 幂等性键存储
+ * 由 IdempotencyService 按配置顺序使用，存储抛出异常时自动切换到下一个
+ */
+public interface IdempotencyStore {
+
+    /**
+     * 存储名称，对应 easybill.idempotency.stores 中的取值
+     */
+    String getName();
+
+    /**
+     * 记录幂等性键
+     * @return true 如果是新记录，false 如果已存在
+     */
+    boolean putIfAbsent(String key);
+
+    boolean exists(String key);
+}
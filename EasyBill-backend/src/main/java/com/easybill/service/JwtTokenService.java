@@ -0,0 +1,183 @@
+package com.easybill.service;
+
+import com.easybill.config.JwtPrincipal;
+import com.easybill.util.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * JWT 认证快速路径
+ * 签名只在首次见到 token 时校验一次，结果在本地 LRU 中短时缓存；
+ * 当前用户由 token 载荷构建，每个请求不再查询 users 表。
+ * 只有退出登录会注销 token（本机立即生效）；其余 token 在过期前一直有效
+ */
+@Slf4j
+@Service
+public class JwtTokenService implements MetricsSource {
+
+    private final JwtUtil jwtUtil;
+    private final int maxSize;
+    private final long ttlMs;
+
+    // token -> 校验结果；条目有效期取缓存 TTL 与 token 过期时间中较早者
+    private final Map<String, VerifiedToken> verified;
+
+    // 已注销的 token -> token 过期时间，过期后清理
+    private final Map<String, Long> revokedTokens = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalid = new LongAdder();
+    private final LongAdder rejectedRevoked = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public JwtTokenService(
+            JwtUtil jwtUtil,
+            @Value("${easybill.auth.token-cache.max-size:10000}") int maxSize,
+            @Value("${easybill.auth.token-cache.ttl-seconds:300}") long ttlSeconds
+    ) {
+        this.jwtUtil = jwtUtil;
+        this.maxSize = maxSize;
+        this.ttlMs = TimeUnit.SECONDS.toMillis(ttlSeconds);
+        this.verified = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, VerifiedToken> eldest) {
+                if (size() > JwtTokenService.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 校验 token 并返回当前用户
+     * @return token 无效、过期或已吊销时返回 empty
+     */
+    public Optional<JwtPrincipal> authenticate(String token) {
+        long now = System.currentTimeMillis();
+        VerifiedToken entry = getCached(token, now);
+        if (entry != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            entry = verify(token, now);
+            if (entry == null) {
+                invalid.increment();
+                return Optional.empty();
+            }
+            putCached(token, entry);
+        }
+
+        if (revokedTokens.containsKey(token)) {
+            rejectedRevoked.increment();
+            return Optional.empty();
+        }
+        return Optional.of(entry.principal());
+    }
+
+    /**
+     * 注销单个 token（如用户退出登录）
+     */
+    public void revokeToken(String token) {
+        VerifiedToken entry = verify(token, System.currentTimeMillis());
+        if (entry == null) {
+            return;
+        }
+        revokedTokens.put(token, entry.tokenExpiresAt());
+        synchronized (verified) {
+            verified.remove(token);
+        }
+    }
+
+    /**
+     * 清理已过期的注销记录
+     */
+    @Scheduled(fixedDelayString = "${easybill.auth.token-cache.purge-interval-ms:600000}")
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        revokedTokens.values().removeIf(expiresAt -> expiresAt <= now);
+    }
+
+    private VerifiedToken verify(String token, long now) {
+        Claims claims;
+        try {
+            claims = jwtUtil.parseClaims(token);
+        } catch (JwtException | IllegalArgumentException e) {
+            log.debug("JWT 校验失败: {}", e.getMessage());
+            return null;
+        }
+
+        Long userId = jwtUtil.extractUserId(claims);
+        if (userId == null || claims.getSubject() == null || claims.getExpiration() == null) {
+            return null;
+        }
+        long tokenExpiresAt = claims.getExpiration().getTime();
+        return new VerifiedToken(
+                new JwtPrincipal(userId, claims.getSubject()),
+                tokenExpiresAt,
+                Math.min(tokenExpiresAt, now + ttlMs)
+        );
+    }
+
+    private VerifiedToken getCached(String token, long now) {
+        synchronized (verified) {
+            VerifiedToken entry = verified.get(token);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.cacheExpiresAt() <= now) {
+                verified.remove(token);
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    private void putCached(String token, VerifiedToken entry) {
+        synchronized (verified) {
+            verified.put(token, entry);
+        }
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "auth-token";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        int size;
+        synchronized (verified) {
+            size = verified.size();
+        }
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("size", size);
+        metrics.put("maxSize", maxSize);
+        metrics.put("hits", hitCount);
+        metrics.put("misses", misses.sum());
+        metrics.put("hitRate", total > 0 ? (double) hitCount / total : 0.0);
+        metrics.put("invalid", invalid.sum());
+        metrics.put("rejectedRevoked", rejectedRevoked.sum());
+        metrics.put("revokedTokens", revokedTokens.size());
+        metrics.put("evictions", evictions.sum());
+        return metrics;
+    }
+
+    private record VerifiedToken(JwtPrincipal principal, long tokenExpiresAt, long cacheExpiresAt) {
+    }
+}
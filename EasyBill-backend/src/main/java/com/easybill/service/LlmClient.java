@@ -0,0 +1,157 @@
+package com.easybill.service;
+
+import com.easybill.util.AdaptiveConcurrencyLimiter;
+import com.easybill.util.CircuitBreaker;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 模型调用入口
+ * 复用同一个 ChatClient，调用前经过熔断器和 AIMD 自适应并发限制；
+ * 熔断打开、等待超时或调用失败时抛出 LlmUnavailableException，由调用方延后处理
+ */
+@Slf4j
+@Service
+public class LlmClient implements MetricsSource {
+
+    private final ChatClient chatClient;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final CircuitBreaker circuitBreaker;
+    private final long acquireTimeoutMs;
+
+    private final LongAdder callCount = new LongAdder();
+    private final LongAdder failureCount = new LongAdder();
+    private final LongAdder acquireTimeoutCount = new LongAdder();
+    private final LongAdder breakerRejectedCount = new LongAdder();
+    private final LongAdder totalLatencyMs = new LongAdder();
+
+    public LlmClient(
+            ChatClient chatClient,
+            @Value("${easybill.llm.initial-concurrency:4}") int initialConcurrency,
+            @Value("${easybill.llm.min-concurrency:1}") int minConcurrency,
+            @Value("${easybill.llm.max-concurrency:8}") int maxConcurrency,
+            @Value("${easybill.llm.latency-threshold-ms:10000}") long latencyThresholdMs,
+            @Value("${easybill.llm.acquire-timeout-ms:10000}") long acquireTimeoutMs,
+            @Value("${easybill.llm.breaker.window-size:20}") int breakerWindowSize,
+            @Value("${easybill.llm.breaker.minimum-calls:10}") int breakerMinimumCalls,
+            @Value("${easybill.llm.breaker.failure-rate-threshold:0.5}") double breakerFailureRateThreshold,
+            @Value("${easybill.llm.breaker.open-duration-ms:30000}") long breakerOpenDurationMs,
+            @Value("${easybill.llm.breaker.half-open-calls:2}") int breakerHalfOpenCalls
+    ) {
+        this.chatClient = chatClient;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.limiter = new AdaptiveConcurrencyLimiter(
+            initialConcurrency, minConcurrency, maxConcurrency, latencyThresholdMs, 0.5
+        );
+        this.circuitBreaker = new CircuitBreaker(
+            breakerWindowSize, breakerMinimumCalls, breakerFailureRateThreshold,
+            breakerOpenDurationMs, breakerHalfOpenCalls
+        );
+    }
+
+    /**
+     * 发送 Prompt 并返回模型文本响应
+     * @throws LlmUnavailableException 熔断打开、并发已满或调用失败
+     */
+    public String call(String prompt) {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            breakerRejectedCount.increment();
+            throw new LlmUnavailableException("AI 服务熔断中，稍后重试");
+        }
+
+        acquire();
+        long start = System.currentTimeMillis();
+        try {
+            String content = chatClient.prompt()
+                .user(prompt)
+                .call()
+                .content();
+            long latency = System.currentTimeMillis() - start;
+            totalLatencyMs.add(latency);
+            limiter.onSuccess(latency);
+            circuitBreaker.onSuccess();
+            callCount.increment();
+            return content;
+        } catch (NonTransientAiException e) {
+            // 请求本身被拒绝（参数错误等），与服务负载无关，不计入熔断
+            limiter.onIgnored();
+            circuitBreaker.onSuccess();
+            failureCount.increment();
+            throw e;
+        } catch (RuntimeException e) {
+            totalLatencyMs.add(System.currentTimeMillis() - start);
+            limiter.onDropped();
+            circuitBreaker.onFailure();
+            failureCount.increment();
+            log.warn("AI 调用失败，熔断状态: {}, 并发限制: {}, 错误: {}",
+                circuitBreaker.getState(), limiter.getLimit(), e.getMessage());
+            throw new LlmUnavailableException("AI 调用失败: " + e.getMessage(), e, true);
+        }
+    }
+
+    /**
+     * 熔断器是否允许调用（供延后队列判断是否恢复投递）
+     */
+    public boolean isAvailable() {
+        return !circuitBreaker.isOpen();
+    }
+
+    /**
+     * 熔断器当前还能放行的调用数（最多 max）：半开时只有剩余的探测名额
+     */
+    public int permittedCalls(int max) {
+        return circuitBreaker.permittedCalls(max);
+    }
+
+    private void acquire() {
+        boolean acquired;
+        try {
+            acquired = limiter.acquire(acquireTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            circuitBreaker.release();
+            throw new LlmUnavailableException("等待 AI 调用许可被中断", e);
+        }
+
+        if (!acquired) {
+            circuitBreaker.release();
+            acquireTimeoutCount.increment();
+            log.warn("AI 调用并发已满，等待 {}ms 未获得许可", acquireTimeoutMs);
+            throw new LlmUnavailableException("AI 调用并发已满，稍后重试");
+        }
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "llm-client";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        int limit = limiter.getLimit();
+        int inFlight = limiter.getInFlight();
+        long finished = callCount.sum() + failureCount.sum();
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("breakerState", circuitBreaker.getState().name());
+        metrics.put("breakerFailureRate", circuitBreaker.getFailureRate());
+        metrics.put("breakerOpenCount", circuitBreaker.getOpenCount());
+        metrics.put("breakerRejected", breakerRejectedCount.sum());
+        metrics.put("concurrencyLimit", limit);
+        metrics.put("inFlight", inFlight);
+        metrics.put("waiting", limiter.getWaiting());
+        metrics.put("saturation", limit > 0 ? (double) inFlight / limit : 0.0);
+        metrics.put("calls", callCount.sum());
+        metrics.put("failures", failureCount.sum());
+        metrics.put("acquireTimeouts", acquireTimeoutCount.sum());
+        metrics.put("avgLatencyMs", finished > 0 ? (double) totalLatencyMs.sum() / finished : 0.0);
+        return metrics;
+    }
+}
@@ -0,0 +1,30 @@
+package com.easybill.service;
+
+/**
+ * 模型服务暂不可用（熔断打开、并发已满或调用超时），短信应延后解析而不是标记失败
+ */
+public class LlmUnavailableException extends RuntimeException {
+
+    // 实际发起了调用且失败（超时、5xx 等）；熔断拒绝或等待许可超时时为 false
+    private final boolean callFailed;
+
+    public LlmUnavailableException(String message) {
+        this(message, null, false);
+    }
+
+    public LlmUnavailableException(String message, Throwable cause) {
+        this(message, cause, false);
+    }
+
+    public LlmUnavailableException(String message, Throwable cause, boolean callFailed) {
+        super(message, cause);
+        this.callFailed = callFailed;
+    }
+
+    /**
+     * 是否由这次调用本身失败引起（可能与短信内容有关，延后解析时计入次数）
+     */
+    public boolean isCallFailed() {
+        return callFailed;
+    }
+}
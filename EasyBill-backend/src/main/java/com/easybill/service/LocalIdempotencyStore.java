@@ -0,0 +1,63 @@
+package com.easybill.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地内存幂等性存储（LRU + 过期时间）
+ * 仅在单实例内有效，适合单机部署或作为 Redis 故障期间的兜底
+ */
+@Component
+public class LocalIdempotencyStore implements IdempotencyStore {
+
+    @Value("${easybill.idempotency.local.max-size:100000}")
+    private int maxSize;
+
+    @Value("${easybill.idempotency.local.ttl-hours:168}")
+    private long ttlHours;
+
+    // 键 -> 过期时间戳
+    private LinkedHashMap<String, Long> entries;
+
+    @PostConstruct
+    void init() {
+        entries = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > maxSize || eldest.getValue() < System.currentTimeMillis();
+            }
+        };
+    }
+
+    @Override
+    public String getName() {
+        return "local";
+    }
+
+    @Override
+    public synchronized boolean putIfAbsent(String key) {
+        long now = System.currentTimeMillis();
+        Long expiresAt = entries.get(key);
+        if (expiresAt != null && expiresAt >= now) {
+            return false;
+        }
+        entries.remove(key);
+        entries.put(key, now + TimeUnit.HOURS.toMillis(ttlHours));
+        return true;
+    }
+
+    @Override
+    public synchronized boolean exists(String key) {
+        Long expiresAt = entries.get(key);
+        return expiresAt != null && expiresAt >= System.currentTimeMillis();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,19 @@
+package com.easybill.service;
+
+import java.util.Map;
+
+/**
+ * 运行时指标来源，由 /api/metrics 统一汇总输出
+ */
+public interface MetricsSource {
+
+    /**
+     * 指标分组名称
+     */
+    String getMetricsName();
+
+    /**
+     * 当前指标快照
+     */
+    Map<String, Object> getMetrics();
+}
@@ -0,0 +1,419 @@
+package com.easybill.service;
+
+import com.easybill.dto.ParsedTransaction;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * AI 解析结果缓存（本地 LRU + Redis 两级）
+ * 缓存键为 MD5(Prompt 指纹 + 发件人 + 数字归一化后的短信模板)，
+ * 金额、卡号、日期等数字槽位在命中时用本条短信的实际值回填
+ */
+@Slf4j
+@Service
+public class ParseCacheService implements MetricsSource {
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${easybill.parse-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${easybill.parse-cache.local-max-size:10000}")
+    private int localMaxSize;
+
+    @Value("${easybill.parse-cache.ttl-hours:24}")
+    private long ttlHours;
+
+    private static final String CACHE_PREFIX = "easybill:parse-cache:";
+
+    // 数字槽位：金额、卡号、日期、时间等（如 1,128.50 / 1234 / 12:30）
+    private static final Pattern NUMBER_PATTERN = Pattern.compile("\\d+(?:[.,:]\\d+)*");
+
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("H:mm");
+
+    private LinkedHashMap<String, LocalEntry> localCache;
+
+    private final LongAdder localHits = new LongAdder();
+    private final LongAdder redisHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder uncacheable = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder redisErrors = new LongAdder();
+
+    @PostConstruct
+    void init() {
+        localCache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, LocalEntry> eldest) {
+                if (size() > localMaxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 查询缓存
+     * @param promptFingerprint 当前 Prompt 的指纹，Prompt 变化后旧缓存自然失效
+     */
+    public Optional<ParsedTransaction> get(String promptFingerprint, String rawContent, String sender) {
+        if (!enabled || rawContent == null) {
+            return Optional.empty();
+        }
+
+        NormalizedSms sms = normalize(rawContent);
+        String key = cacheKey(promptFingerprint, sender, sms.template());
+
+        CachedParse cached = getLocal(key);
+        if (cached != null) {
+            localHits.increment();
+        } else {
+            cached = getRedis(key);
+            if (cached != null) {
+                redisHits.increment();
+                putLocal(key, cached);
+            }
+        }
+
+        if (cached == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+
+        ParsedTransaction parsed = fill(cached, sms.slots());
+        if (parsed == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        log.debug("解析缓存命中，发件人: {}", sender);
+        return Optional.of(parsed);
+    }
+
+    /**
+     * 写入缓存
+     * 金额或卡号无法唯一对应到短信中的数字槽位、或商户名含数字时不缓存，避免回填出错误数据
+     */
+    public void put(String promptFingerprint, String rawContent, String sender, ParsedTransaction parsed) {
+        if (!enabled || rawContent == null || parsed == null || parsed.getAmount() == null) {
+            return;
+        }
+
+        NormalizedSms sms = normalize(rawContent);
+        CachedParse cached = abstractSlots(parsed, sms.slots());
+        if (cached == null) {
+            uncacheable.increment();
+            return;
+        }
+
+        String key = cacheKey(promptFingerprint, sender, sms.template());
+        putLocal(key, cached);
+        try {
+            redisTemplate.opsForValue().set(
+                CACHE_PREFIX + key, objectMapper.writeValueAsString(cached), ttlHours, TimeUnit.HOURS
+            );
+        } catch (Exception e) {
+            redisErrors.increment();
+            log.debug("写入 Redis 解析缓存失败: {}", e.getMessage());
+        }
+        puts.increment();
+    }
+
+    /**
+     * 清空全部解析缓存（修改 Prompt 模板后调用）
+     * @return Redis 中删除的键数量
+     */
+    public long invalidateAll() {
+        synchronized (this) {
+            localCache.clear();
+        }
+        invalidations.increment();
+
+        try {
+            List<String> keys = redisTemplate.execute((RedisCallback<List<String>>) connection -> scanKeys(connection));
+            if (keys == null || keys.isEmpty()) {
+                return 0;
+            }
+            Long deleted = redisTemplate.delete(keys);
+            return deleted != null ? deleted : 0;
+        } catch (Exception e) {
+            redisErrors.increment();
+            log.warn("清理 Redis 解析缓存失败: {}", e.getMessage());
+            return 0;
+        }
+    }
+
+    private List<String> scanKeys(RedisConnection connection) {
+        List<String> keys = new ArrayList<>();
+        ScanOptions options = ScanOptions.scanOptions().match(CACHE_PREFIX + "*").count(1000).build();
+        try (Cursor<byte[]> cursor = connection.keyCommands().scan(options)) {
+            while (cursor.hasNext()) {
+                keys.add(new String(cursor.next(), StandardCharsets.UTF_8));
+            }
+        }
+        return keys;
+    }
+
+    private String cacheKey(String promptFingerprint, String sender, String template) {
+        return DigestUtils.md5Hex(promptFingerprint + "|" + (sender != null ? sender : "") + "|" + template);
+    }
+
+    private synchronized CachedParse getLocal(String key) {
+        LocalEntry entry = localCache.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt() < System.currentTimeMillis()) {
+            localCache.remove(key);
+            expirations.increment();
+            return null;
+        }
+        return entry.value();
+    }
+
+    private synchronized void putLocal(String key, CachedParse value) {
+        localCache.put(key, new LocalEntry(value, System.currentTimeMillis() + TimeUnit.HOURS.toMillis(ttlHours)));
+    }
+
+    private CachedParse getRedis(String key) {
+        try {
+            String json = redisTemplate.opsForValue().get(CACHE_PREFIX + key);
+            return json != null ? objectMapper.readValue(json, CachedParse.class) : null;
+        } catch (Exception e) {
+            redisErrors.increment();
+            log.debug("读取 Redis 解析缓存失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 数字归一化：每个数字串替换为 # 占位，并按顺序记录原值
+     */
+    private NormalizedSms normalize(String rawContent) {
+        List<String> slots = new ArrayList<>();
+        Matcher matcher = NUMBER_PATTERN.matcher(rawContent.trim());
+        StringBuilder template = new StringBuilder();
+        while (matcher.find()) {
+            slots.add(matcher.group());
+            matcher.appendReplacement(template, "#");
+        }
+        matcher.appendTail(template);
+        return new NormalizedSms(template.toString(), slots);
+    }
+
+    /**
+     * 把解析结果中的具体值映射为槽位下标
+     */
+    private CachedParse abstractSlots(ParsedTransaction parsed, List<String> slots) {
+        // 商户名原样缓存，而缓存键中的数字已归一化：含数字的商户（如 7-11、12306、门店编号）换一条短信就可能不同
+        if (parsed.getMerchant() != null && NUMBER_PATTERN.matcher(parsed.getMerchant()).find()) {
+            return null;
+        }
+
+        // 金额优先匹配带小数点的槽位，避免与同值的日期数字冲突
+        Integer amountSlot = uniqueSlot(slots, value -> value.contains(".") && sameAmount(value, parsed.getAmount()));
+        if (amountSlot == null) {
+            amountSlot = uniqueSlot(slots, value -> sameAmount(value, parsed.getAmount()));
+        }
+        if (amountSlot == null) {
+            return null;
+        }
+
+        Integer cardSlot = null;
+        if (parsed.getCardLastFour() != null) {
+            cardSlot = uniqueSlot(slots, value -> value.equals(parsed.getCardLastFour()));
+            if (cardSlot == null) {
+                return null;
+            }
+        }
+
+        // 时间槽位映射不上时只丢弃时间，交易时间回退为处理时刻
+        Integer monthSlot = null;
+        Integer daySlot = null;
+        Integer timeSlot = null;
+        LocalDateTime time = parseTime(parsed.getTransactionTime());
+        if (time != null) {
+            monthSlot = firstSlot(slots, 0, value -> value.matches("\\d{1,2}") && Integer.parseInt(value) == time.getMonthValue());
+            daySlot = monthSlot != null
+                ? firstSlot(slots, monthSlot + 1, value -> value.matches("\\d{1,2}") && Integer.parseInt(value) == time.getDayOfMonth())
+                : null;
+            timeSlot = firstSlot(slots, 0, value -> sameTime(value, time.toLocalTime()));
+            if (daySlot == null) {
+                monthSlot = null;
+            }
+        }
+
+        return new CachedParse(
+            parsed.getType(), parsed.getMerchant(), parsed.getCategoryHint(),
+            amountSlot, cardSlot, monthSlot, daySlot, timeSlot
+        );
+    }
+
+    /**
+     * 用本条短信的槽位值回填缓存结构
+     */
+    private ParsedTransaction fill(CachedParse cached, List<String> slots) {
+        // 旧版本写入的含数字商户的缓存不再使用
+        if (cached.merchant() != null && NUMBER_PATTERN.matcher(cached.merchant()).find()) {
+            return null;
+        }
+        try {
+            ParsedTransaction parsed = new ParsedTransaction();
+            parsed.setType(cached.type());
+            parsed.setMerchant(cached.merchant());
+            parsed.setCategoryHint(cached.categoryHint());
+            parsed.setAmount(new BigDecimal(slots.get(cached.amountSlot()).replace(",", "")));
+            if (cached.cardSlot() != null) {
+                parsed.setCardLastFour(slots.get(cached.cardSlot()));
+            }
+            if (cached.monthSlot() != null && cached.daySlot() != null) {
+                parsed.setTransactionTime(SmsRuleParser.resolveTime(
+                    slots.get(cached.monthSlot()),
+                    slots.get(cached.daySlot()),
+                    cached.timeSlot() != null ? slots.get(cached.timeSlot()) : null
+                ));
+            }
+            return parsed;
+        } catch (Exception e) {
+            log.debug("解析缓存回填失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private Integer uniqueSlot(List<String> slots, Predicate<String> matcher) {
+        Integer found = null;
+        for (int i = 0; i < slots.size(); i++) {
+            if (matcher.test(slots.get(i))) {
+                if (found != null) {
+                    return null;
+                }
+                found = i;
+            }
+        }
+        return found;
+    }
+
+    private Integer firstSlot(List<String> slots, int from, Predicate<String> matcher) {
+        for (int i = from; i < slots.size(); i++) {
+            if (matcher.test(slots.get(i))) {
+                return i;
+            }
+        }
+        return null;
+    }
+
+    private boolean sameAmount(String value, BigDecimal amount) {
+        if (value.contains(":")) {
+            return false;
+        }
+        try {
+            return new BigDecimal(value.replace(",", "")).compareTo(amount) == 0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private boolean sameTime(String value, LocalTime time) {
+        if (!value.matches("\\d{1,2}:\\d{2}")) {
+            return false;
+        }
+        try {
+            return LocalTime.parse(value, TIME_FORMATTER).equals(time.withSecond(0).withNano(0));
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private LocalDateTime parseTime(String timeStr) {
+        if (timeStr == null || timeStr.isEmpty()) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(timeStr, DateTimeFormatter.ISO_DATE_TIME);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "parse-cache";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        int localSize;
+        synchronized (this) {
+            localSize = localCache.size();
+        }
+        long hits = localHits.sum() + redisHits.sum();
+        long total = hits + misses.sum();
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("localSize", localSize);
+        metrics.put("localMaxSize", localMaxSize);
+        metrics.put("localHits", localHits.sum());
+        metrics.put("redisHits", redisHits.sum());
+        metrics.put("misses", misses.sum());
+        metrics.put("hitRatio", total > 0 ? (double) hits / total : 0.0);
+        metrics.put("puts", puts.sum());
+        metrics.put("uncacheable", uncacheable.sum());
+        metrics.put("evictions", evictions.sum());
+        metrics.put("expirations", expirations.sum());
+        metrics.put("invalidations", invalidations.sum());
+        metrics.put("redisErrors", redisErrors.sum());
+        return metrics;
+    }
+
+    private record NormalizedSms(String template, List<String> slots) {
+    }
+
+    private record LocalEntry(CachedParse value, long expiresAt) {
+    }
+
+    /**
+     * 缓存的解析结构：常量字段直接保存，数字字段保存槽位下标
+     */
+    record CachedParse(
+        String type,
+        String merchant,
+        String categoryHint,
+        int amountSlot,
+        Integer cardSlot,
+        Integer monthSlot,
+        Integer daySlot,
+        Integer timeSlot
+    ) {
+    }
+}
@@ -0,0 +1,40 @@
+package com.easybill.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis 幂等性存储（SETNX，7 天过期），多实例共享
+ */
+@Component
+public class RedisIdempotencyStore implements IdempotencyStore {
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    private static final String IDEMPOTENCY_PREFIX = "easybill:idempotency:";
+    private static final long EXPIRATION_DAYS = 7;
+
+    @Override
+    public String getName() {
+        return "redis";
+    }
+
+    @Override
+    public boolean putIfAbsent(String key) {
+        Boolean result = redisTemplate.opsForValue()
+            .setIfAbsent(IDEMPOTENCY_PREFIX + key, "1", EXPIRATION_DAYS, TimeUnit.DAYS);
+        if (result == null) {
+            throw new IllegalStateException("Redis SETNX 未返回结果");
+        }
+        return result;
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Boolean.TRUE.equals(redisTemplate.hasKey(IDEMPOTENCY_PREFIX + key));
+    }
+}
@@ -0,0 +1,212 @@
+package com.easybill.service;
+
+import com.easybill.dto.ParsedTransaction;
+import com.easybill.dto.SmsWebhookRequest;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 批量 AI 解析
+ * 收集最多 max-size 条或等待最多 max-wait-ms 后合并为一次 AI 调用，
+ * 批量结果缺失或校验不通过的短信再逐条解析
+ */
+@Slf4j
+@Service
+public class SmsBatchParser implements MetricsSource {
+
+    private final AIParserService aiParserService;
+    private final ThreadPoolTaskExecutor executor;
+
+    private final boolean enabled;
+    private final int maxSize;
+    private final long maxWaitMs;
+    private final long timeoutMs;
+
+    private final BlockingQueue<PendingParse> queue = new LinkedBlockingQueue<>();
+    private volatile boolean running;
+    private Thread collector;
+
+    private final LongAdder batchCount = new LongAdder();
+    private final LongAdder batchedItems = new LongAdder();
+    private final LongAdder individualRetries = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    public SmsBatchParser(
+            AIParserService aiParserService,
+            @Qualifier("parserBatchExecutor") ThreadPoolTaskExecutor executor,
+            @Value("${easybill.parser.batch.enabled:false}") boolean enabled,
+            @Value("${easybill.parser.batch.max-size:10}") int maxSize,
+            @Value("${easybill.parser.batch.max-wait-ms:200}") long maxWaitMs,
+            @Value("${easybill.parser.batch.timeout-ms:60000}") long timeoutMs
+    ) {
+        this.aiParserService = aiParserService;
+        this.executor = executor;
+        this.enabled = enabled;
+        this.maxSize = maxSize;
+        this.maxWaitMs = maxWaitMs;
+        this.timeoutMs = timeoutMs;
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        collector = new Thread(this::collectLoop, "parser-batch-collector");
+        collector.setDaemon(true);
+        collector.start();
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        if (collector != null) {
+            collector.interrupt();
+        }
+    }
+
+    /**
+     * 解析短信（未开启批量时等同于 AIParserService.parse）
+     * 规则或缓存命中时直接返回，不进入批量队列
+     */
+    public ParsedTransaction parse(String rawContent, String sender) {
+        if (!enabled) {
+            return aiParserService.parse(rawContent, sender);
+        }
+
+        Optional<ParsedTransaction> local = aiParserService.parseLocally(rawContent, sender);
+        if (local.isPresent()) {
+            return local.get();
+        }
+
+        PendingParse pending = new PendingParse(rawContent, sender, new CompletableFuture<>());
+        queue.add(pending);
+        try {
+            return pending.result().get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            log.warn("批量解析等待超时，发件人: {}", sender);
+            throw new LlmUnavailableException("批量解析等待超时");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof LlmUnavailableException unavailable) {
+                throw unavailable;
+            }
+            log.error("批量解析失败: {}", e.getMessage(), e);
+            return null;
+        }
+    }
+
+    private void collectLoop() {
+        while (running) {
+            try {
+                PendingParse first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+
+                List<PendingParse> batch = new ArrayList<>(maxSize);
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+                while (batch.size() < maxSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    PendingParse next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                executor.execute(() -> flush(batch));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("批量解析收集线程异常: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private void flush(List<PendingParse> batch) {
+        try {
+            if (batch.size() == 1) {
+                PendingParse only = batch.get(0);
+                only.result().complete(aiParserService.parse(only.rawContent(), only.sender()));
+                return;
+            }
+
+            batchCount.increment();
+            batchedItems.add(batch.size());
+
+            List<SmsWebhookRequest> items = new ArrayList<>(batch.size());
+            for (PendingParse pending : batch) {
+                SmsWebhookRequest item = new SmsWebhookRequest();
+                item.setRawContent(pending.rawContent());
+                item.setSender(pending.sender());
+                items.add(item);
+            }
+
+            List<ParsedTransaction> results = aiParserService.parseBatch(items);
+            for (int i = 0; i < batch.size(); i++) {
+                PendingParse pending = batch.get(i);
+                ParsedTransaction parsed = results.get(i);
+                if (parsed != null) {
+                    pending.result().complete(parsed);
+                    continue;
+                }
+                individualRetries.increment();
+                try {
+                    pending.result().complete(aiParserService.parse(pending.rawContent(), pending.sender()));
+                } catch (Exception e) {
+                    pending.result().completeExceptionally(e);
+                }
+            }
+        } catch (Exception e) {
+            if (!(e instanceof LlmUnavailableException)) {
+                log.error("批量解析失败: {}", e.getMessage(), e);
+            }
+            batch.forEach(pending -> pending.result().completeExceptionally(e));
+        }
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "parser-batch";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        long batches = batchCount.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("queueDepth", queue.size());
+        metrics.put("batches", batches);
+        metrics.put("batchedItems", batchedItems.sum());
+        metrics.put("avgBatchSize", batches > 0 ? (double) batchedItems.sum() / batches : 0.0);
+        metrics.put("individualRetries", individualRetries.sum());
+        metrics.put("timeouts", timeouts.sum());
+        return metrics;
+    }
+
+    private record PendingParse(String rawContent, String sender, CompletableFuture<ParsedTransaction> result) {
+    }
+}
@@ -0,0 +1,255 @@
+package com.easybill.service;
+
+import com.easybill.entity.RawSmsLog;
+import com.easybill.repository.RawSmsLogRepository;
+import com.easybill.util.BloomFilter;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 短信原文去重（解析前）
+ * 以 MD5(用户 ID + 发件人 + 原文) 为键（不同用户收到相同短信互不影响），依次查询本地最近记录、布隆过滤器和 Redis：
+ * 本地命中直接判定；布隆过滤器判定不存在时不查 Redis；可能存在时再由 Redis 确认。
+ * 解析后的幂等性检查（IdempotencyService）保持不变，作为兜底
+ */
+@Slf4j
+@Service
+public class SmsDedupService implements MetricsSource {
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    private RawSmsLogRepository rawSmsLogRepository;
+
+    @Value("${easybill.sms.dedup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${easybill.sms.dedup.expected-insertions:1000000}")
+    private long expectedInsertions;
+
+    @Value("${easybill.sms.dedup.false-positive-rate:0.001}")
+    private double falsePositiveRate;
+
+    @Value("${easybill.sms.dedup.window-days:7}")
+    private int windowDays;
+
+    @Value("${easybill.sms.dedup.local-max-size:10000}")
+    private int localMaxSize;
+
+    private static final String DEDUP_PREFIX = "easybill:sms-dedup:";
+
+    private static final int REBUILD_PAGE_SIZE = 1000;
+
+    private volatile BloomFilter filter;
+
+    // 重建期间新写入同时记入新过滤器，避免切换后丢失
+    private volatile BloomFilter rebuilding;
+
+    // 首次重建完成前布隆过滤器不完整，“不存在”的结论不可信
+    private volatile boolean ready;
+
+    // 最近处理过的原文摘要 -> 首次出现的日志 ID
+    private LinkedHashMap<String, Long> recent;
+
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder localHits = new LongAdder();
+    private final LongAdder bloomNegatives = new LongAdder();
+    private final LongAdder redisChecks = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder redisErrors = new LongAdder();
+
+    @PostConstruct
+    void init() {
+        filter = BloomFilter.create(expectedInsertions, falsePositiveRate);
+        recent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > localMaxSize;
+            }
+        };
+    }
+
+    /**
+     * 启动时从最近 window-days 天的原始日志重建过滤器
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    /**
+     * 定期重建，淘汰窗口外的旧记录并控制误判率
+     */
+    @Scheduled(cron = "${easybill.sms.dedup.rebuild-cron:0 30 3 * * *}")
+    public void scheduledRebuild() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    /**
+     * 判断短信原文是否已处理过
+     * @return 首次出现该原文的日志 ID；不是重复时返回 empty
+     */
+    public Optional<Long> findDuplicate(RawSmsLog smsLog) {
+        if (!enabled || smsLog.getFullContent() == null) {
+            return Optional.empty();
+        }
+        checks.increment();
+
+        byte[] digest = digest(smsLog.getUserId(), smsLog.getSender(), smsLog.getFullContent());
+        String hash = Hex.encodeHexString(digest);
+        Long logId = smsLog.getId();
+
+        Long firstLogId = getRecent(hash);
+        if (firstLogId != null) {
+            localHits.increment();
+            return duplicateOf(firstLogId, logId);
+        }
+
+        if (ready && !filter.mightContain(digest)) {
+            bloomNegatives.increment();
+            remember(hash, digest, logId);
+            try {
+                redisTemplate.opsForValue().set(DEDUP_PREFIX + hash, String.valueOf(logId), windowDays, TimeUnit.DAYS);
+            } catch (Exception e) {
+                redisErrors.increment();
+                log.warn("写入短信去重记录失败: {}", e.getMessage());
+            }
+            return Optional.empty();
+        }
+
+        redisChecks.increment();
+        try {
+            Boolean created = redisTemplate.opsForValue()
+                .setIfAbsent(DEDUP_PREFIX + hash, String.valueOf(logId), windowDays, TimeUnit.DAYS);
+            if (Boolean.TRUE.equals(created)) {
+                if (ready) {
+                    falsePositives.increment();
+                }
+                remember(hash, digest, logId);
+                return Optional.empty();
+            }
+            String existing = redisTemplate.opsForValue().get(DEDUP_PREFIX + hash);
+            firstLogId = existing != null ? Long.valueOf(existing) : logId;
+        } catch (Exception e) {
+            // Redis 不可用时按新短信处理，由解析后的幂等性检查兜底
+            redisErrors.increment();
+            log.warn("查询短信去重记录失败: {}", e.getMessage());
+            return Optional.empty();
+        }
+
+        remember(hash, digest, firstLogId);
+        return duplicateOf(firstLogId, logId);
+    }
+
+    /**
+     * 重建布隆过滤器
+     */
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        BloomFilter next = BloomFilter.create(expectedInsertions, falsePositiveRate);
+        rebuilding = next;
+        try {
+            LocalDateTime since = LocalDateTime.now().minusDays(windowDays);
+            long cursor = 0;
+            List<RawSmsLogRepository.ContentView> page;
+            do {
+                page = rawSmsLogRepository.findByIdGreaterThanAndCreatedAtAfterOrderByIdAsc(
+                    cursor, since, PageRequest.of(0, REBUILD_PAGE_SIZE)
+                );
+                for (RawSmsLogRepository.ContentView row : page) {
+                    next.put(digest(row.getUserId(), row.getSender(), row.getFullContent()));
+                    cursor = row.getId();
+                }
+            } while (page.size() == REBUILD_PAGE_SIZE);
+        } catch (Exception e) {
+            rebuilding = null;
+            log.error("短信去重过滤器重建失败: {}", e.getMessage(), e);
+            return;
+        }
+
+        filter = next;
+        rebuilding = null;
+        ready = true;
+        log.info("短信去重过滤器重建完成，记录数: {}, 耗时: {}ms", next.getInsertions(), System.currentTimeMillis() - start);
+    }
+
+    private static byte[] digest(Long userId, String sender, String content) {
+        return DigestUtils.md5(userId + "\n" + sender + "\n" + content);
+    }
+
+    private Optional<Long> duplicateOf(Long firstLogId, Long logId) {
+        // 同一条日志重新投递（如延后解析恢复）不算重复
+        if (firstLogId.equals(logId)) {
+            return Optional.empty();
+        }
+        duplicates.increment();
+        return Optional.of(firstLogId);
+    }
+
+    private void remember(String hash, byte[] digest, Long logId) {
+        // 先读 rebuilding 再读 filter：重建切换时先替换 filter 再清空 rebuilding，保证不漏写
+        BloomFilter next = rebuilding;
+        if (next != null) {
+            next.put(digest);
+        }
+        filter.put(digest);
+        synchronized (recent) {
+            recent.putIfAbsent(hash, logId);
+        }
+    }
+
+    private Long getRecent(String hash) {
+        synchronized (recent) {
+            return recent.get(hash);
+        }
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "sms-dedup";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        BloomFilter current = filter;
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("ready", ready);
+        metrics.put("filterInsertions", current.getInsertions());
+        metrics.put("filterBits", current.getBitCount());
+        metrics.put("filterHashes", current.getHashCount());
+        metrics.put("expectedFalsePositiveRate", current.expectedFalsePositiveRate());
+        metrics.put("checks", checks.sum());
+        metrics.put("localHits", localHits.sum());
+        metrics.put("bloomNegatives", bloomNegatives.sum());
+        metrics.put("redisChecks", redisChecks.sum());
+        metrics.put("falsePositives", falsePositives.sum());
+        metrics.put("duplicates", duplicates.sum());
+        metrics.put("redisErrors", redisErrors.sum());
+        return metrics;
+    }
+}
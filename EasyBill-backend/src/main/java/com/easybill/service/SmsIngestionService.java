@@ -0,0 +1,373 @@
+package com.easybill.service;
+
+import com.easybill.dto.SmsBatchItemResult;
+import com.easybill.dto.SmsIngestionStatusDTO;
+import com.easybill.dto.SmsWebhookRequest;
+import com.easybill.entity.RawSmsLog;
+import com.easybill.entity.Transaction;
+import com.easybill.entity.User;
+import com.easybill.repository.RawSmsLogBatchRepository;
+import com.easybill.repository.RawSmsLogRepository;
+import com.easybill.repository.TransactionRepository;
+import com.easybill.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 短信异步接入流水线
+ * Webhook 只负责落库 PENDING 日志，解析和建账由有界工作线程池完成；
+ * 队列在内存中，进程重启时未处理的 PENDING 日志、以及租约过期的 PROCESSING 日志由定时任务重新投递
+ */
+@Slf4j
+@Service
+public class SmsIngestionService implements MetricsSource {
+
+    private final SmsProcessingService smsProcessingService;
+    private final RawSmsLogRepository rawSmsLogRepository;
+    private final RawSmsLogBatchRepository rawSmsLogBatchRepository;
+    private final TransactionRepository transactionRepository;
+    private final UserRepository userRepository;
+    private final ThreadPoolTaskExecutor executor;
+
+    // 在途许可（执行中 + 排队中），耗尽时拒绝新请求以形成背压
+    private final Semaphore permits;
+    private final int capacity;
+
+    // 批量接口：每次 JDBC batch 的条数、单次请求的最大条数
+    private final int batchChunkSize;
+    private final int batchMaxItems;
+
+    // 超过该时长仍为 PENDING、或 PROCESSING 租约已过期的日志视为丢失（如进程重启），重新投递
+    private final boolean staleSweepEnabled;
+    private final long staleAfterMinutes;
+
+    private static final int STALE_PAGE_SIZE = 100;
+
+    // 本机已投递、尚未处理完的日志 ID
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder acceptedCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder completedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder staleResubmittedCount = new LongAdder();
+
+    public SmsIngestionService(
+            SmsProcessingService smsProcessingService,
+            RawSmsLogRepository rawSmsLogRepository,
+            RawSmsLogBatchRepository rawSmsLogBatchRepository,
+            TransactionRepository transactionRepository,
+            UserRepository userRepository,
+            @Qualifier("smsIngestionExecutor") ThreadPoolTaskExecutor executor,
+            @Value("${easybill.sms.async.concurrency:4}") int concurrency,
+            @Value("${easybill.sms.async.queue-capacity:500}") int queueCapacity,
+            @Value("${easybill.sms.batch.chunk-size:100}") int batchChunkSize,
+            @Value("${easybill.sms.batch.max-items:1000}") int batchMaxItems,
+            @Value("${easybill.sms.async.stale-sweep-enabled:true}") boolean staleSweepEnabled,
+            @Value("${easybill.sms.async.stale-after-minutes:10}") long staleAfterMinutes
+    ) {
+        this.smsProcessingService = smsProcessingService;
+        this.rawSmsLogRepository = rawSmsLogRepository;
+        this.rawSmsLogBatchRepository = rawSmsLogBatchRepository;
+        this.transactionRepository = transactionRepository;
+        this.userRepository = userRepository;
+        this.executor = executor;
+        this.capacity = concurrency + queueCapacity;
+        this.permits = new Semaphore(capacity);
+        this.batchChunkSize = batchChunkSize;
+        this.batchMaxItems = batchMaxItems;
+        this.staleSweepEnabled = staleSweepEnabled;
+        this.staleAfterMinutes = staleAfterMinutes;
+    }
+
+    /**
+     * 接收短信：保存 PENDING 日志并提交到工作线程池
+     * @return 已保存的日志；队列已满时返回 empty，调用方应提示稍后重试
+     */
+    public Optional<RawSmsLog> submit(User user, SmsWebhookRequest request) {
+        if (!permits.tryAcquire()) {
+            rejectedCount.increment();
+            log.warn("短信解析队列已满，拒绝请求，用户: {}", user.getUsername());
+            return Optional.empty();
+        }
+
+        RawSmsLog smsLog;
+        try {
+            smsLog = smsProcessingService.saveRawLog(user, request);
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+
+        if (!dispatch(user, smsLog)) {
+            return Optional.empty();
+        }
+        log.info("短信已入队，日志 ID: {}", smsLog.getId());
+        return Optional.of(smsLog);
+    }
+
+    /**
+     * 重新投递已保存的日志（延后解析恢复时使用）
+     * @return 队列已满时返回 false，日志状态保持不变
+     */
+    public boolean resubmit(User user, RawSmsLog smsLog) {
+        if (!permits.tryAcquire()) {
+            return false;
+        }
+        return dispatch(user, smsLog);
+    }
+
+    /**
+     * 重新投递长时间停留在 PENDING、或 PROCESSING 租约已过期的日志
+     * 工作队列只在内存中，进程重启或投递失败后这些日志不会再被处理。
+     * 每条日志先用条件更新抢占（改为 PROCESSING 并续租），只有抢占成功才投递，
+     * 因此不会与正在完成的任务或其他实例重复处理。
+     * 启动后第一次执行即可恢复重启前积压的日志，队列已满时剩余的留待下一轮
+     */
+    @Scheduled(
+        initialDelayString = "${easybill.sms.async.stale-sweep-interval-ms:60000}",
+        fixedDelayString = "${easybill.sms.async.stale-sweep-interval-ms:60000}"
+    )
+    public void resubmitStale() {
+        if (!staleSweepEnabled) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime before = now.minusMinutes(staleAfterMinutes);
+        Map<Long, Optional<User>> users = new HashMap<>();
+        int resubmitted = sweep("PENDING", before, now, users) + sweep("PROCESSING", before, now, users);
+
+        staleResubmittedCount.add(resubmitted);
+        if (resubmitted > 0) {
+            log.info("已重新投递滞留的短信 {} 条", resubmitted);
+        }
+    }
+
+    /**
+     * 按 ID 游标扫描一种状态的滞留日志，逐条抢占后投递
+     * @return 投递的条数；队列已满时提前结束
+     */
+    private int sweep(String status, LocalDateTime before, LocalDateTime now, Map<Long, Optional<User>> users) {
+        LocalDateTime leaseUntil = now.plusMinutes(staleAfterMinutes);
+        int resubmitted = 0;
+        long cursor = 0;
+        boolean more = true;
+        while (more) {
+            List<RawSmsLog> page = "PENDING".equals(status)
+                    ? rawSmsLogRepository.findByParseStatusAndIdGreaterThanAndCreatedAtBeforeOrderByIdAsc(
+                            status, cursor, before, PageRequest.of(0, STALE_PAGE_SIZE))
+                    : rawSmsLogRepository.findByParseStatusAndIdGreaterThanAndNextRetryAtBeforeOrderByIdAsc(
+                            status, cursor, now, PageRequest.of(0, STALE_PAGE_SIZE));
+            more = page.size() == STALE_PAGE_SIZE;
+            for (RawSmsLog smsLog : page) {
+                cursor = smsLog.getId();
+                if (inFlight.contains(smsLog.getId())) {
+                    continue;
+                }
+                Optional<User> user = users.computeIfAbsent(smsLog.getUserId(), userRepository::findById);
+                if (user.isEmpty()) {
+                    continue;
+                }
+                if (!permits.tryAcquire()) {
+                    return resubmitted;
+                }
+                // 条件更新抢占：读取之后日志可能已处理完，或被其他实例取走
+                int claimed = "PENDING".equals(status)
+                        ? rawSmsLogRepository.claimPending(smsLog.getId(), leaseUntil)
+                        : rawSmsLogRepository.claimExpired(smsLog.getId(), now, leaseUntil);
+                if (claimed == 0) {
+                    permits.release();
+                    continue;
+                }
+                smsLog.setParseStatus("PROCESSING");
+                if (!dispatch(user.get(), smsLog)) {
+                    // 已续租，租约过期后由下一轮接管
+                    return resubmitted;
+                }
+                resubmitted++;
+            }
+        }
+        return resubmitted;
+    }
+
+    /**
+     * 批量接收短信：边读边按块批量落库，逐条返回处理结果
+     * 请求体以流的方式迭代，不会整体读入内存
+     */
+    public List<SmsBatchItemResult> submitBatch(User user, Iterator<SmsWebhookRequest> requests) {
+        List<SmsBatchItemResult> results = new ArrayList<>();
+        List<SmsWebhookRequest> chunk = new ArrayList<>(batchChunkSize);
+        List<SmsBatchItemResult> chunkResults = new ArrayList<>(batchChunkSize);
+        int index = 0;
+
+        try {
+            while (requests.hasNext()) {
+                SmsWebhookRequest request = requests.next();
+                SmsBatchItemResult result = SmsBatchItemResult.builder().index(index++).build();
+                results.add(result);
+
+                if (index > batchMaxItems) {
+                    reject(result, "REJECTED", "超出单次批量上限 " + batchMaxItems);
+                    continue;
+                }
+                if (request == null || isBlank(request.getRawContent()) || isBlank(request.getSender())) {
+                    reject(result, "INVALID", "缺少短信内容或发件人");
+                    continue;
+                }
+                if (!permits.tryAcquire()) {
+                    rejectedCount.increment();
+                    reject(result, "REJECTED", "系统繁忙，请稍后重试");
+                    continue;
+                }
+
+                chunk.add(request);
+                chunkResults.add(result);
+                if (chunk.size() >= batchChunkSize) {
+                    flushChunk(user, chunk, chunkResults);
+                    chunk.clear();
+                    chunkResults.clear();
+                }
+            }
+        } catch (RuntimeException e) {
+            // 请求体格式错误：已读取的部分照常处理，其余部分不再读取
+            log.warn("批量短信请求体解析失败，已读取 {} 条: {}", index, e.getMessage());
+            SmsBatchItemResult result = SmsBatchItemResult.builder().index(index).build();
+            reject(result, "INVALID", "请求体格式错误: " + e.getMessage());
+            results.add(result);
+        }
+
+        if (!chunk.isEmpty()) {
+            flushChunk(user, chunk, chunkResults);
+        }
+
+        log.info("批量短信处理完成，用户: {}, 条数: {}", user.getUsername(), results.size());
+        return results;
+    }
+
+    private void flushChunk(User user, List<SmsWebhookRequest> chunk, List<SmsBatchItemResult> chunkResults) {
+        List<RawSmsLog> logs = new ArrayList<>(chunk.size());
+        for (SmsWebhookRequest request : chunk) {
+            logs.add(smsProcessingService.buildRawLog(user, request));
+        }
+
+        try {
+            rawSmsLogBatchRepository.insertAll(logs);
+        } catch (RuntimeException e) {
+            permits.release(chunk.size());
+            log.error("批量保存短信日志失败: {}", e.getMessage(), e);
+            chunkResults.forEach(result -> reject(result, "ERROR", "保存失败"));
+            return;
+        }
+
+        for (int i = 0; i < logs.size(); i++) {
+            RawSmsLog smsLog = logs.get(i);
+            SmsBatchItemResult result = chunkResults.get(i);
+            result.setLogId(smsLog.getId());
+            if (dispatch(user, smsLog)) {
+                result.setStatus("PENDING");
+            } else {
+                reject(result, "PENDING", "已保存，等待重新调度");
+            }
+        }
+    }
+
+    /**
+     * 提交已保存的日志到工作线程池（调用前须已获取许可）
+     */
+    private boolean dispatch(User user, RawSmsLog smsLog) {
+        inFlight.add(smsLog.getId());
+        try {
+            executor.execute(() -> process(user, smsLog));
+        } catch (TaskRejectedException e) {
+            // 许可数不超过线程数 + 队列容量，正常不会走到这里；日志保持 PENDING 等待重试
+            inFlight.remove(smsLog.getId());
+            permits.release();
+            rejectedCount.increment();
+            log.error("提交短信解析任务失败，日志 ID: {}", smsLog.getId(), e);
+            return false;
+        }
+        acceptedCount.increment();
+        return true;
+    }
+
+    private void reject(SmsBatchItemResult result, String status, String message) {
+        result.setStatus(status);
+        result.setMessage(message);
+    }
+
+    private boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    /**
+     * 查询短信解析状态
+     */
+    public Optional<SmsIngestionStatusDTO> getStatus(Long logId, Long userId) {
+        return rawSmsLogRepository.findByIdAndUserId(logId, userId)
+                .map(smsLog -> {
+                    Transaction transaction = transactionRepository.findFirstByRawLogId(smsLog.getId())
+                            .orElse(null);
+                    return SmsIngestionStatusDTO.builder()
+                            .logId(smsLog.getId())
+                            .parseStatus(smsLog.getParseStatus())
+                            .errorMessage(smsLog.getErrorMessage())
+                            .transactionId(transaction != null ? transaction.getId() : null)
+                            .transactionStatus(transaction != null ? transaction.getStatus() : null)
+                            .createdAt(smsLog.getCreatedAt())
+                            .build();
+                });
+    }
+
+    private void process(User user, RawSmsLog smsLog) {
+        try {
+            smsProcessingService.processRawLog(user, smsLog);
+            completedCount.increment();
+        } catch (Exception e) {
+            failedCount.increment();
+            log.error("异步处理短信失败，日志 ID: {}", smsLog.getId(), e);
+        } finally {
+            inFlight.remove(smsLog.getId());
+            permits.release();
+        }
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "sms-ingestion";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("capacity", capacity);
+        metrics.put("inFlight", capacity - permits.availablePermits());
+        metrics.put("activeWorkers", executor.getActiveCount());
+        metrics.put("queueDepth", executor.getThreadPoolExecutor().getQueue().size());
+        metrics.put("accepted", acceptedCount.sum());
+        metrics.put("rejected", rejectedCount.sum());
+        metrics.put("completed", completedCount.sum());
+        metrics.put("failed", failedCount.sum());
+        metrics.put("staleResubmitted", staleResubmittedCount.sum());
+        return metrics;
+    }
+}
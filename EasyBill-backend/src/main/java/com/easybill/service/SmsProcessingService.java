@@ -3,17 +3,25 @@ package com.easybill.service;
 import com.easybill.dto.ParsedTransaction;
 import com.easybill.dto.SmsWebhookRequest;
 import com.easybill.entity.*;
+import com.easybill.event.TransactionChangedEvent;
 import com.easybill.repository.*;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.List;
 import java.util.Optional;
 
 @Slf4j
@@ -21,12 +29,26 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class SmsProcessingService {
     
+    private static final String PARSE_FAILED_REMARK = "AI 解析失败，请手动编辑";
+    
     @Autowired
-    private AIParserService aiParserService;
+    private SmsBatchParser smsBatchParser;
     
     @Autowired
     private IdempotencyService idempotencyService;
     
+    @Autowired
+    private SmsDedupService smsDedupService;
+    
+    @Autowired
+    private StatsRollupService statsRollupService;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    @Autowired
+    private TransactionService transactionService;
+    
     @Autowired
     private RawSmsLogRepository rawSmsLogRepository;
     
@@ -39,24 +61,86 @@ public class SmsProcessingService {
     @Autowired
     private ObjectMapper objectMapper;
     
-    @Transactional
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    // 解析租约：PROCESSING 超过该时长未结束视为处理进程已退出，由滞留日志定时任务接管
+    @Value("${easybill.sms.async.stale-after-minutes:10}")
+    private long processingLeaseMinutes;
+    
+    @Value("${easybill.llm.deferred.max-attempts:5}")
+    private int deferredMaxAttempts;
+    
+    @Value("${easybill.llm.deferred.base-backoff-ms:30000}")
+    private long deferredBaseBackoffMs;
+    
+    @Value("${easybill.llm.deferred.max-backoff-ms:3600000}")
+    private long deferredMaxBackoffMs;
+    
+    /**
+     * 同步处理短信
+     * 不包在一个大事务中：原始日志先落库，AI 请求期间不占用数据库连接，交易插入在独立的短事务中完成
+     */
     public Transaction processSms(User user, SmsWebhookRequest request) {
         log.info("处理短信，用户: {}, 发件人: {}", user.getUsername(), request.getSender());
         
         // 1. 保存原始短信日志
+        RawSmsLog smsLog = saveRawLog(user, request);
+        
+        return processRawLog(user, smsLog);
+    }
+    
+    /**
+     * 保存原始短信日志（状态为 PENDING）
+     */
+    public RawSmsLog saveRawLog(User user, SmsWebhookRequest request) {
+        return rawSmsLogRepository.save(buildRawLog(user, request));
+    }
+    
+    /**
+     * 构建原始短信日志（未保存）
+     */
+    public RawSmsLog buildRawLog(User user, SmsWebhookRequest request) {
         RawSmsLog smsLog = new RawSmsLog();
         smsLog.setUserId(user.getId());
         smsLog.setSender(request.getSender());
         smsLog.setFullContent(request.getRawContent());
         smsLog.setDeviceInfo(request.getDeviceId());
         smsLog.setParseStatus("PENDING");
-        smsLog = rawSmsLogRepository.save(smsLog);
+        return smsLog;
+    }
+    
+    /**
+     * 解析已保存的原始短信并创建交易记录
+     * 异步流水线在事务外调用，AI 请求期间不占用数据库连接
+     * @return 创建的交易；AI 服务暂不可用而延后解析、或重复短信的原交易尚未生成时返回 null
+     */
+    public Transaction processRawLog(User user, RawSmsLog smsLog) {
+        // 先抢占日志：已离开 PENDING（其他线程或实例已处理）时不再重复解析，避免覆盖已有结果
+        if ("PENDING".equals(smsLog.getParseStatus())) {
+            LocalDateTime leaseUntil = LocalDateTime.now().plusMinutes(processingLeaseMinutes);
+            if (rawSmsLogRepository.claimPending(smsLog.getId(), leaseUntil) == 0) {
+                log.info("短信已被其他任务处理，跳过，日志 ID: {}", smsLog.getId());
+                return transactionRepository.findFirstByRawLogIdAndUser_Id(smsLog.getId(), user.getId()).orElse(null);
+            }
+            smsLog.setParseStatus("PROCESSING");
+        }
         
         try {
+            // 原文去重：与已处理短信完全相同时不再调用 AI
+            Optional<Long> originalLogId = smsDedupService.findDuplicate(smsLog);
+            if (originalLogId.isPresent()) {
+                log.warn("检测到重复短信，原日志 ID: {}", originalLogId.get());
+                smsLog.setParseStatus("DUPLICATE");
+                smsLog.setErrorMessage("与日志 " + originalLogId.get() + " 内容相同");
+                rawSmsLogRepository.save(smsLog);
+                return transactionRepository.findFirstByRawLogIdAndUser_Id(originalLogId.get(), user.getId()).orElse(null);
+            }
+            
             // 2. AI 解析
-            ParsedTransaction parsed = aiParserService.parse(
-                request.getRawContent(), 
-                request.getSender()
+            ParsedTransaction parsed = smsBatchParser.parse(
+                smsLog.getFullContent(), 
+                smsLog.getSender()
             );
             
             if (parsed == null || parsed.getAmount() == null) {
@@ -72,18 +156,26 @@ public class SmsProcessingService {
             
             // 3. 生成幂等性键
             String idempotencyKey = idempotencyService.generateKey(
+                user.getId(),
                 parsed.getCardLastFour(),
                 parsed.getAmount(),
                 parsed.getMerchant(),
-                request.getRawContent()
+                smsLog.getFullContent()
             );
             
-            // 4. 检查重复
+            // 4. 检查重复（含升级前旧格式键生成的交易）
+            Optional<Transaction> legacy = findLegacyDuplicate(user, parsed, smsLog);
+            if (legacy.isPresent()) {
+                log.warn("检测到重复交易（旧格式幂等性键），交易 ID: {}", legacy.get().getId());
+                smsLog.setParseStatus("DUPLICATE");
+                rawSmsLogRepository.save(smsLog);
+                return legacy.get();
+            }
             if (!idempotencyService.checkAndSet(idempotencyKey)) {
                 log.warn("检测到重复交易，幂等性键: {}", idempotencyKey);
                 smsLog.setParseStatus("DUPLICATE");
                 rawSmsLogRepository.save(smsLog);
-                return transactionRepository.findByIdempotencyKey(idempotencyKey).orElse(null);
+                return transactionRepository.findByIdempotencyKeyAndUser_Id(idempotencyKey, user.getId()).orElse(null);
             }
             
             // 5. 查找账户
@@ -107,7 +199,17 @@ public class SmsProcessingService {
             transaction.setStatus(TransactionStatus.PENDING); // 待用户确认
             transaction.setIdempotencyKey(idempotencyKey);
             
-            transaction = transactionRepository.save(transaction);
+            try {
+                // 唯一索引冲突只回滚这次插入，已保存的原始日志不受影响
+                transaction = insertTransaction(transaction);
+                publishCreated(user, transaction);
+            } catch (DataIntegrityViolationException e) {
+                // 幂等性存储切换期间的重复由 idempotency_key 唯一索引拦截
+                log.warn("交易幂等性键冲突，按重复处理: {}", idempotencyKey);
+                smsLog.setParseStatus("DUPLICATE");
+                rawSmsLogRepository.save(smsLog);
+                return transactionRepository.findByIdempotencyKeyAndUser_Id(idempotencyKey, user.getId()).orElse(null);
+            }
             
             // 7. 更新日志状态
             smsLog.setParseStatus("SUCCESS");
@@ -116,27 +218,160 @@ public class SmsProcessingService {
             log.info("交易记录创建成功，ID: {}", transaction.getId());
             return transaction;
             
-        } catch (Exception e) {
-            log.error("处理短信失败: {}", e.getMessage(), e);
+        } catch (LlmUnavailableException e) {
+            // 调用本身失败时计入延后次数：可能是这条短信触发的，次数用完后转为 ERROR，交给失败重试任务处理
+            int deferred = smsLog.getRetryCount() != null ? smsLog.getRetryCount() : 0;
+            int attempts = e.isCallFailed() ? deferred + 1 : deferred;
+            if (attempts >= deferredMaxAttempts) {
+                log.warn("短信延后解析已达 {} 次，转为解析失败，日志 ID: {}", attempts, smsLog.getId());
+                smsLog.setRetryCount(0);
+                smsLog.setNextRetryAt(null);
+                return markError(user, smsLog, e.getMessage());
+            }
             
-            // 记录错误
-            smsLog.setParseStatus("ERROR");
+            // AI 服务暂不可用：不生成占位交易，标记为延后解析，由 DeferredParseScheduler 恢复后重新投递
+            log.warn("AI 服务暂不可用，短信延后解析，日志 ID: {}, 原因: {}", smsLog.getId(), e.getMessage());
+            smsLog.setParseStatus("DEFERRED");
             smsLog.setErrorMessage(e.getMessage());
+            if (attempts > deferred) {
+                long backoff = deferredBaseBackoffMs << Math.min(attempts - 1, 20);
+                smsLog.setRetryCount(attempts);
+                smsLog.setNextRetryAt(LocalDateTime.now().plus(Duration.ofMillis(Math.min(backoff, deferredMaxBackoffMs))));
+            }
             rawSmsLogRepository.save(smsLog);
+            return null;
             
-            // 创建一个待处理的交易记录（用户可以手动编辑）
-            Transaction transaction = new Transaction();
+        } catch (Exception e) {
+            log.error("处理短信失败: {}", e.getMessage(), e);
+            return markError(user, smsLog, e.getMessage());
+        }
+    }
+    
+    /**
+     * 标记解析错误，并生成“解析失败”占位交易（用户可以手动编辑，失败重试任务成功后覆盖）
+     */
+    private Transaction markError(User user, RawSmsLog smsLog, String message) {
+        // 记录错误
+        smsLog.setParseStatus("ERROR");
+        smsLog.setErrorMessage(message);
+        rawSmsLogRepository.save(smsLog);
+        
+        // 创建一个待处理的交易记录（用户可以手动编辑）
+        Transaction transaction = new Transaction();
+        transaction.setUser(user);
+        transaction.setType(TransactionType.EXPENSE); // 默认为支出
+        transaction.setAmount(BigDecimal.ZERO);
+        transaction.setMerchant("解析失败");
+        transaction.setTransactionTime(LocalDateTime.now());
+        transaction.setRawLogId(smsLog.getId());
+        transaction.setStatus(TransactionStatus.PENDING);
+        transaction.setRemark(PARSE_FAILED_REMARK);
+        
+        transaction = insertTransaction(transaction);
+        publishCreated(user, transaction);
+        return transaction;
+    }
+    
+    /**
+     * 查找升级前以旧格式幂等性键（不含用户 ID）入库的同一笔交易
+     * 只查本用户的交易，不查幂等性存储：旧键不区分用户，查存储会把其他用户的相同短信误判为重复
+     */
+    private Optional<Transaction> findLegacyDuplicate(User user, ParsedTransaction parsed, RawSmsLog smsLog) {
+        String legacyKey = idempotencyService.generateLegacyKey(
+            parsed.getCardLastFour(),
+            parsed.getAmount(),
+            parsed.getMerchant(),
+            smsLog.getFullContent()
+        );
+        if (legacyKey == null) {
+            return Optional.empty();
+        }
+        Optional<Transaction> transaction = transactionRepository.findByIdempotencyKeyAndUser_Id(legacyKey, user.getId());
+        if (transaction.isPresent()) {
+            idempotencyService.recordLegacyMatch();
+        }
+        return transaction;
+    }
+    
+    /**
+     * 用重新解析的结果更新失败短信关联的交易（失败日志重试时使用）
+     * 只覆盖仍为 MANUAL/PENDING 的占位交易，用户已确认的交易保持不变
+     * @return 更新后的交易；重复或已被用户确认时返回 null
+     */
+    @Transactional
+    public Transaction applyReparsed(User user, RawSmsLog smsLog, ParsedTransaction parsed) throws JsonProcessingException {
+        smsLog.setAiResponse(objectMapper.writeValueAsString(parsed));
+        smsLog.setErrorMessage(null);
+        smsLog.setNextRetryAt(null);
+        
+        Transaction transaction = transactionRepository.findFirstByRawLogId(smsLog.getId()).orElse(null);
+        if (transaction != null && transaction.getStatus() == TransactionStatus.CONFIRMED) {
+            log.info("交易已由用户确认，不覆盖，日志 ID: {}", smsLog.getId());
+            smsLog.setParseStatus("SUCCESS");
+            rawSmsLogRepository.save(smsLog);
+            return null;
+        }
+        
+        String idempotencyKey = idempotencyService.generateKey(
+            user.getId(),
+            parsed.getCardLastFour(),
+            parsed.getAmount(),
+            parsed.getMerchant(),
+            smsLog.getFullContent()
+        );
+        
+        if (findLegacyDuplicate(user, parsed, smsLog).isPresent() || !idempotencyService.checkAndSet(idempotencyKey)) {
+            // 已有相同交易：占位交易不再需要
+            log.warn("重试解析检测到重复交易，日志 ID: {}", smsLog.getId());
+            smsLog.setParseStatus("DUPLICATE");
+            rawSmsLogRepository.save(smsLog);
+            if (transaction != null) {
+                transactionRepository.delete(transaction);
+                statsRollupService.recordDeleted(statsRollupService.snapshot(transaction));
+                eventPublisher.publishEvent(TransactionChangedEvent.deleted(user.getId(), List.of(transaction.getId())));
+            }
+            return null;
+        }
+        
+        StatsRollupService.Snapshot before = statsRollupService.snapshot(transaction);
+        boolean created = transaction == null;
+        if (created) {
+            transaction = new Transaction();
             transaction.setUser(user);
-            transaction.setType(TransactionType.EXPENSE); // 默认为支出
-            transaction.setAmount(BigDecimal.ZERO);
-            transaction.setMerchant("解析失败");
-            transaction.setTransactionTime(LocalDateTime.now());
             transaction.setRawLogId(smsLog.getId());
-            transaction.setStatus(TransactionStatus.PENDING);
-            transaction.setRemark("AI 解析失败，请手动编辑");
-            
-            return transactionRepository.save(transaction);
         }
+        
+        Account account = null;
+        if (parsed.getCardLastFour() != null) {
+            account = accountRepository.findByUserIdAndLastFourDigits(
+                user.getId(), 
+                parsed.getCardLastFour()
+            ).orElse(null);
+        }
+        
+        transaction.setAccount(account);
+        transaction.setType(TransactionType.valueOf(parsed.getType()));
+        transaction.setAmount(parsed.getAmount());
+        transaction.setMerchant(parsed.getMerchant());
+        transaction.setTransactionTime(parseTransactionTime(parsed.getTransactionTime()));
+        transaction.setStatus(TransactionStatus.PENDING); // 待用户确认
+        transaction.setIdempotencyKey(idempotencyKey);
+        if (PARSE_FAILED_REMARK.equals(transaction.getRemark())) {
+            transaction.setRemark(null);
+        }
+        transaction = transactionRepository.save(transaction);
+        statsRollupService.recordChanged(before, statsRollupService.snapshot(transaction));
+        if (created) {
+            publishCreated(user, transaction);
+        } else {
+            eventPublisher.publishEvent(TransactionChangedEvent.updated(user.getId(), transactionService.convertToDTO(transaction)));
+        }
+        
+        smsLog.setParseStatus("SUCCESS");
+        rawSmsLogRepository.save(smsLog);
+        
+        log.info("重试解析成功，日志 ID: {}, 交易 ID: {}", smsLog.getId(), transaction.getId());
+        return transaction;
     }
     
     /**
@@ -151,7 +386,27 @@ public class SmsProcessingService {
         transaction.setTransactionTime(LocalDateTime.now());
         transaction.setRawLogId(smsLog.getId());
         transaction.setStatus(TransactionStatus.MANUAL); // Changed from "MANUAL" to TransactionStatus.MANUAL
-        return transactionRepository.save(transaction);
+        transaction = insertTransaction(transaction);
+        publishCreated(user, transaction);
+        return transaction;
+    }
+    
+    /**
+     * 交易和统计汇总在同一事务中写入
+     */
+    private Transaction insertTransaction(Transaction transaction) {
+        return transactionTemplate.execute(status -> {
+            Transaction saved = transactionRepository.save(transaction);
+            statsRollupService.recordCreated(saved);
+            return saved;
+        });
+    }
+    
+    /**
+     * 发布交易创建事件（携带交易内容，前端无需重新查询）
+     */
+    private void publishCreated(User user, Transaction transaction) {
+        eventPublisher.publishEvent(TransactionChangedEvent.created(user.getId(), transactionService.convertToDTO(transaction)));
     }
     
     /**
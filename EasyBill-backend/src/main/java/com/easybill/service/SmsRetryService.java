@@ -0,0 +1,270 @@
+package com.easybill.service;
+
+import com.easybill.dto.ParsedTransaction;
+import com.easybill.dto.SmsRetryReport;
+import com.easybill.entity.RawSmsLog;
+import com.easybill.entity.User;
+import com.easybill.repository.RawSmsLogRepository;
+import com.easybill.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 失败短信自动重试
+ * 按 ID 游标分页扫描 FAILED/ERROR 日志，限速重新解析，成功后原地更新关联的占位交易；
+ * 每条日志失败后按指数退避安排下次重试，达到次数上限后不再处理
+ */
+@Slf4j
+@Service
+public class SmsRetryService implements MetricsSource {
+
+    private static final List<String> RETRYABLE_STATUSES = List.of("FAILED", "ERROR");
+
+    private final RawSmsLogRepository rawSmsLogRepository;
+    private final UserRepository userRepository;
+    private final SmsProcessingService smsProcessingService;
+    private final SmsBatchParser smsBatchParser;
+    private final LlmClient llmClient;
+    private final ThreadPoolTaskExecutor executor;
+
+    private final boolean enabled;
+    private final boolean dryRun;
+    private final int maxAttempts;
+    private final int pageSize;
+    private final int maxPerRun;
+    private final long intervalMs;
+    private final long baseBackoffMs;
+    private final long maxBackoffMs;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    // 最近一轮的结果，手动触发后通过指标查看
+    private volatile SmsRetryReport lastReport;
+
+    private final LongAdder succeededCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder skippedCount = new LongAdder();
+    private final LongAdder exhaustedCount = new LongAdder();
+
+    public SmsRetryService(
+            RawSmsLogRepository rawSmsLogRepository,
+            UserRepository userRepository,
+            SmsProcessingService smsProcessingService,
+            SmsBatchParser smsBatchParser,
+            LlmClient llmClient,
+            @Qualifier("smsRetryExecutor") ThreadPoolTaskExecutor executor,
+            @Value("${easybill.sms.retry.enabled:false}") boolean enabled,
+            @Value("${easybill.sms.retry.dry-run:false}") boolean dryRun,
+            @Value("${easybill.sms.retry.max-attempts:5}") int maxAttempts,
+            @Value("${easybill.sms.retry.page-size:50}") int pageSize,
+            @Value("${easybill.sms.retry.max-per-run:200}") int maxPerRun,
+            @Value("${easybill.sms.retry.rate-per-second:2}") double ratePerSecond,
+            @Value("${easybill.sms.retry.base-backoff-ms:60000}") long baseBackoffMs,
+            @Value("${easybill.sms.retry.max-backoff-ms:86400000}") long maxBackoffMs
+    ) {
+        this.rawSmsLogRepository = rawSmsLogRepository;
+        this.userRepository = userRepository;
+        this.smsProcessingService = smsProcessingService;
+        this.smsBatchParser = smsBatchParser;
+        this.llmClient = llmClient;
+        this.executor = executor;
+        this.enabled = enabled;
+        this.dryRun = dryRun;
+        this.maxAttempts = maxAttempts;
+        this.pageSize = pageSize;
+        this.maxPerRun = maxPerRun;
+        this.intervalMs = ratePerSecond > 0 ? (long) (1000 / ratePerSecond) : 0;
+        this.baseBackoffMs = baseBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+    }
+
+    @Scheduled(
+        initialDelayString = "${easybill.sms.retry.interval-ms:300000}",
+        fixedDelayString = "${easybill.sms.retry.interval-ms:300000}"
+    )
+    public void scheduledRetry() {
+        if (enabled) {
+            retryFailed(dryRun);
+        }
+    }
+
+    /**
+     * 在后台执行一轮重试（管理员手动触发），结果见指标 lastReport
+     * @return 已有一轮在执行时返回 false
+     */
+    public boolean submit(boolean dryRun) {
+        if (running.get()) {
+            return false;
+        }
+        try {
+            executor.execute(() -> retryFailed(dryRun));
+            return true;
+        } catch (TaskRejectedException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 执行一轮重试
+     * @param dryRun 试运行：只解析并统计结果，不修改日志和交易
+     */
+    public SmsRetryReport retryFailed(boolean dryRun) {
+        SmsRetryReport report = SmsRetryReport.builder().dryRun(dryRun).build();
+        if (!running.compareAndSet(false, true)) {
+            report.setAborted(true);
+            return report;
+        }
+
+        try {
+            Map<Long, Optional<User>> users = new HashMap<>();
+            long cursor = 0;
+            while (report.getScanned() < maxPerRun) {
+                int limit = Math.min(pageSize, maxPerRun - report.getScanned());
+                List<RawSmsLog> page = rawSmsLogRepository.findRetryable(
+                    RETRYABLE_STATUSES, cursor, maxAttempts, LocalDateTime.now(), PageRequest.of(0, limit)
+                );
+                if (page.isEmpty()) {
+                    break;
+                }
+
+                for (RawSmsLog smsLog : page) {
+                    cursor = smsLog.getId();
+                    if (!llmClient.isAvailable()) {
+                        report.setAborted(true);
+                        break;
+                    }
+                    report.setScanned(report.getScanned() + 1);
+                    Optional<User> user = users.computeIfAbsent(smsLog.getUserId(), userRepository::findById);
+                    if (user.isEmpty()) {
+                        report.setSkipped(report.getSkipped() + 1);
+                        continue;
+                    }
+                    if (!retry(user.get(), smsLog, dryRun, report)) {
+                        report.setAborted(true);
+                        break;
+                    }
+                    throttle();
+                }
+                if (report.isAborted() || page.size() < limit) {
+                    break;
+                }
+            }
+        } finally {
+            running.set(false);
+        }
+
+        lastReport = report;
+        if (report.getScanned() > 0) {
+            log.info("失败短信重试完成: {}", report);
+        }
+        return report;
+    }
+
+    /**
+     * 重试单条日志
+     * @return AI 服务不可用时返回 false，本轮结束且不计入重试次数
+     */
+    private boolean retry(User user, RawSmsLog smsLog, boolean dryRun, SmsRetryReport report) {
+        ParsedTransaction parsed;
+        try {
+            parsed = smsBatchParser.parse(smsLog.getFullContent(), smsLog.getSender());
+        } catch (LlmUnavailableException e) {
+            return false;
+        } catch (Exception e) {
+            log.warn("重试解析失败，日志 ID: {}, 原因: {}", smsLog.getId(), e.getMessage());
+            parsed = null;
+        }
+
+        boolean valid = parsed != null && parsed.getAmount() != null && parsed.getAmount().signum() > 0
+            && ("INCOME".equals(parsed.getType()) || "EXPENSE".equals(parsed.getType()));
+
+        if (dryRun) {
+            if (valid) {
+                report.setSucceeded(report.getSucceeded() + 1);
+                log.info("[试运行] 日志 ID: {} 可解析，金额: {}, 商户: {}",
+                    smsLog.getId(), parsed.getAmount(), parsed.getMerchant());
+            } else {
+                report.setFailed(report.getFailed() + 1);
+            }
+            return true;
+        }
+
+        if (valid) {
+            try {
+                if (smsProcessingService.applyReparsed(user, smsLog, parsed) != null) {
+                    report.setSucceeded(report.getSucceeded() + 1);
+                    succeededCount.increment();
+                } else {
+                    report.setSkipped(report.getSkipped() + 1);
+                    skippedCount.increment();
+                }
+                return true;
+            } catch (Exception e) {
+                log.error("重试更新交易失败，日志 ID: {}", smsLog.getId(), e);
+            }
+        }
+
+        scheduleNextAttempt(smsLog);
+        report.setFailed(report.getFailed() + 1);
+        failedCount.increment();
+        if (smsLog.getRetryCount() >= maxAttempts) {
+            report.setExhausted(report.getExhausted() + 1);
+            exhaustedCount.increment();
+        }
+        return true;
+    }
+
+    private void scheduleNextAttempt(RawSmsLog smsLog) {
+        int attempts = (smsLog.getRetryCount() != null ? smsLog.getRetryCount() : 0) + 1;
+        long backoff = baseBackoffMs << Math.min(attempts - 1, 20);
+        smsLog.setRetryCount(attempts);
+        smsLog.setNextRetryAt(LocalDateTime.now().plus(Duration.ofMillis(Math.min(backoff, maxBackoffMs))));
+        rawSmsLogRepository.save(smsLog);
+    }
+
+    private void throttle() {
+        if (intervalMs <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(intervalMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "sms-retry";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("dryRun", dryRun);
+        metrics.put("running", running.get());
+        metrics.put("succeeded", succeededCount.sum());
+        metrics.put("skipped", skippedCount.sum());
+        metrics.put("failed", failedCount.sum());
+        metrics.put("exhausted", exhaustedCount.sum());
+        metrics.put("lastReport", lastReport);
+        return metrics;
+    }
+}
@@ -0,0 +1,248 @@
+package com.easybill.service;
+
+import com.easybill.dto.ParsedTransaction;
+import com.easybill.entity.PromptTemplate;
+import com.easybill.entity.SmsSource;
+import com.easybill.repository.PromptTemplateRepository;
+import com.easybill.repository.SmsSourceRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * 基于正则模板的短信快速解析
+ * 规则来自 prompt_templates.parse_pattern，通过 sms_sources 按发件人号码关联；
+ * 命中则直接返回结果，未命中再交给 AI 解析
+ *
+ * 支持的命名分组：amount（必填）、merchant、card、direction、month、day、time
+ */
+@Slf4j
+@Service
+public class SmsRuleParser implements MetricsSource {
+
+    @Autowired
+    private PromptTemplateRepository promptTemplateRepository;
+
+    @Autowired
+    private SmsSourceRepository smsSourceRepository;
+
+    // 收入关键词，direction 分组命中其中之一时判定为 INCOME
+    private static final Set<String> INCOME_KEYWORDS = Set.of("存入", "收入", "到账", "转入", "收款", "退款");
+
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("H:mm");
+
+    private static final Pattern GROUP_NAME_PATTERN = Pattern.compile("\\(\\?<([a-zA-Z][a-zA-Z0-9]*)>");
+
+    // 按发件人统计的上限，超出后归入 OTHER，避免计数表无限增长
+    private static final int MAX_TRACKED_SENDERS = 1000;
+
+    // 规则快照，重新加载时整体替换
+    private volatile RuleSet ruleSet = new RuleSet(Map.of(), List.of());
+
+    private final Map<String, SenderCounter> senderCounters = new ConcurrentHashMap<>();
+
+    /**
+     * 启动时加载规则
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        reload();
+    }
+
+    /**
+     * 从数据库重新加载并编译规则
+     * @return 已加载的规则数量
+     */
+    public int reload() {
+        Map<Long, SmsRule> rulesByTemplateId = new HashMap<>();
+        for (PromptTemplate template : promptTemplateRepository.findByParsePatternIsNotNull()) {
+            try {
+                rulesByTemplateId.put(template.getId(), compile(template));
+            } catch (PatternSyntaxException e) {
+                log.warn("解析规则编译失败，模板: {}, 错误: {}", template.getBankType(), e.getMessage());
+            }
+        }
+
+        Map<String, List<SmsRule>> rulesBySender = new HashMap<>();
+        for (SmsSource source : smsSourceRepository.findByIsActive(true)) {
+            SmsRule rule = rulesByTemplateId.get(source.getPromptTemplateId());
+            if (rule == null) {
+                continue;
+            }
+            List<SmsRule> senderRules = rulesBySender.computeIfAbsent(source.getSenderNumber(), k -> new ArrayList<>());
+            if (!senderRules.contains(rule)) {
+                senderRules.add(rule);
+            }
+        }
+
+        ruleSet = new RuleSet(rulesBySender, List.copyOf(rulesByTemplateId.values()));
+        log.info("短信解析规则加载完成，规则数: {}, 发件人数: {}", rulesByTemplateId.size(), rulesBySender.size());
+        return rulesByTemplateId.size();
+    }
+
+    /**
+     * 使用规则解析短信
+     * 已配置的发件人只匹配其关联的规则，未配置的发件人尝试全部规则
+     */
+    public Optional<ParsedTransaction> parse(String rawContent, String sender) {
+        if (rawContent == null) {
+            return Optional.empty();
+        }
+
+        RuleSet current = ruleSet;
+        List<SmsRule> rules = sender != null ? current.rulesBySender().get(sender) : null;
+        if (rules == null) {
+            rules = current.allRules();
+        }
+
+        SenderCounter counter = counterFor(sender);
+
+        for (SmsRule rule : rules) {
+            ParsedTransaction parsed = apply(rule, rawContent);
+            if (parsed != null) {
+                counter.hits.increment();
+                log.debug("规则解析命中，发件人: {}, 模板: {}", sender, rule.bankType());
+                return Optional.of(parsed);
+            }
+        }
+
+        counter.misses.increment();
+        return Optional.empty();
+    }
+
+    private SmsRule compile(PromptTemplate template) {
+        Pattern pattern = Pattern.compile(template.getParsePattern());
+        Set<String> groups = new HashSet<>();
+        Matcher matcher = GROUP_NAME_PATTERN.matcher(template.getParsePattern());
+        while (matcher.find()) {
+            groups.add(matcher.group(1));
+        }
+        return new SmsRule(template.getBankType(), pattern, Set.copyOf(groups));
+    }
+
+    private SenderCounter counterFor(String sender) {
+        String key = sender != null ? sender : "UNKNOWN";
+        SenderCounter counter = senderCounters.get(key);
+        if (counter != null) {
+            return counter;
+        }
+        if (senderCounters.size() >= MAX_TRACKED_SENDERS) {
+            key = "OTHER";
+        }
+        return senderCounters.computeIfAbsent(key, k -> new SenderCounter());
+    }
+
+    private ParsedTransaction apply(SmsRule rule, String rawContent) {
+        Matcher matcher = rule.pattern().matcher(rawContent);
+        if (!matcher.find()) {
+            return null;
+        }
+
+        String amountText = group(rule, matcher, "amount");
+        if (amountText == null) {
+            return null;
+        }
+
+        BigDecimal amount;
+        try {
+            amount = new BigDecimal(amountText.replace(",", ""));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (amount.signum() <= 0) {
+            return null;
+        }
+
+        String direction = group(rule, matcher, "direction");
+
+        ParsedTransaction parsed = new ParsedTransaction();
+        parsed.setType(direction != null && INCOME_KEYWORDS.contains(direction) ? "INCOME" : "EXPENSE");
+        parsed.setAmount(amount);
+        parsed.setMerchant(group(rule, matcher, "merchant"));
+        parsed.setCardLastFour(group(rule, matcher, "card"));
+        parsed.setTransactionTime(resolveTime(
+            group(rule, matcher, "month"),
+            group(rule, matcher, "day"),
+            group(rule, matcher, "time")
+        ));
+        return parsed;
+    }
+
+    private String group(SmsRule rule, Matcher matcher, String name) {
+        if (!rule.groups().contains(name)) {
+            return null;
+        }
+        String value = matcher.group(name);
+        return value != null && !value.isBlank() ? value.trim() : null;
+    }
+
+    /**
+     * 短信中的时间通常不带年份，取当前年份；若结果晚于明天则视为去年
+     * 规则解析和解析缓存回填共用
+     */
+    static String resolveTime(String month, String day, String time) {
+        if (month == null || day == null) {
+            return null;
+        }
+
+        try {
+            LocalDate today = LocalDate.now();
+            LocalDate date = LocalDate.of(today.getYear(), Integer.parseInt(month), Integer.parseInt(day));
+            if (date.isAfter(today.plusDays(1))) {
+                date = date.minusYears(1);
+            }
+            LocalTime localTime = time != null ? LocalTime.parse(time, TIME_FORMATTER) : LocalTime.MIDNIGHT;
+            return LocalDateTime.of(date, localTime).toString();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "sms-rules";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        RuleSet current = ruleSet;
+        Map<String, Object> senders = new TreeMap<>();
+        senderCounters.forEach((sender, counter) -> senders.put(sender, Map.of(
+            "hits", counter.hits.sum(),
+            "misses", counter.misses.sum()
+        )));
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("rules", current.allRules().size());
+        metrics.put("configuredSenders", current.rulesBySender().size());
+        metrics.put("hits", senderCounters.values().stream().mapToLong(c -> c.hits.sum()).sum());
+        metrics.put("misses", senderCounters.values().stream().mapToLong(c -> c.misses.sum()).sum());
+        metrics.put("senders", senders);
+        return metrics;
+    }
+
+    private record SmsRule(String bankType, Pattern pattern, Set<String> groups) {
+    }
+
+    private record RuleSet(Map<String, List<SmsRule>> rulesBySender, List<SmsRule> allRules) {
+    }
+
+    private static class SenderCounter {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+    }
+}
@@ -0,0 +1,646 @@
+package com.easybill.service;
+
+import com.easybill.dto.StatementImportStatusDTO;
+import com.easybill.entity.Account;
+import com.easybill.entity.Category;
+import com.easybill.entity.Transaction;
+import com.easybill.entity.TransactionStatus;
+import com.easybill.entity.TransactionType;
+import com.easybill.entity.User;
+import com.easybill.event.TransactionChangedEvent;
+import com.easybill.repository.AccountRepository;
+import com.easybill.repository.CategoryRepository;
+import com.easybill.repository.TransactionBatchRepository;
+import com.easybill.repository.UserRepository;
+import com.easybill.util.CsvReader;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 账单文件批量导入
+ * 上传的 CSV 先落到临时文件，由导入线程池流式读取，按块去重后 JDBC 批量写入，
+ * 进度可通过任务 ID 查询。幂等键由行内容（或流水号）生成，重复导入同一文件不会产生重复交易
+ */
+@Slf4j
+@Service
+public class StatementImportService implements MetricsSource {
+
+    private static final int MAX_REPORTED_ERRORS = 20;
+
+    // 表头之前允许的说明行数（支付宝、微信等导出文件开头带有账户信息）
+    private static final int HEADER_SCAN_LINES = 30;
+
+    private static final DateTimeFormatter[] DATE_TIME_FORMATTERS = {
+            DateTimeFormatter.ofPattern("yyyy-M-d H:mm:ss"),
+            DateTimeFormatter.ofPattern("yyyy-M-d H:mm")
+    };
+
+    private static final DateTimeFormatter[] DATE_FORMATTERS = {
+            DateTimeFormatter.ofPattern("yyyy-M-d"),
+            DateTimeFormatter.BASIC_ISO_DATE
+    };
+
+    private static final List<String> INCOME_KEYWORDS = List.of("收入", "收", "存入", "转入", "退款", "INCOME");
+    private static final List<String> EXPENSE_KEYWORDS = List.of("支出", "支", "消费", "转出", "取出", "EXPENSE");
+
+    private static final Map<String, Column> HEADER_ALIASES = new HashMap<>();
+
+    static {
+        alias(Column.TIME, "交易时间", "交易日期", "记账时间", "记账日期", "时间", "日期", "transactiontime", "time", "date");
+        alias(Column.AMOUNT, "金额", "交易金额", "发生额", "amount");
+        alias(Column.INCOME, "收入", "收入金额", "存入", "存入金额", "贷方金额");
+        alias(Column.EXPENSE, "支出", "支出金额", "取出", "取出金额", "借方金额");
+        alias(Column.TYPE, "收/支", "收支", "收支类型", "类型", "交易类型", "type");
+        alias(Column.MERCHANT, "商户", "商户名称", "交易对方", "对方户名", "对方名称", "摘要", "merchant");
+        alias(Column.REMARK, "备注", "商品", "商品说明", "附言", "remark");
+        alias(Column.CARD, "卡号", "卡号后四位", "卡号尾号", "账号", "card");
+        alias(Column.SERIAL, "流水号", "交易流水号", "交易单号", "交易号", "交易订单号", "serial");
+        alias(Column.CATEGORY, "分类", "类别", "category");
+    }
+
+    private final UserRepository userRepository;
+    private final AccountRepository accountRepository;
+    private final CategoryRepository categoryRepository;
+    private final TransactionBatchRepository transactionBatchRepository;
+    private final StatsRollupService statsRollupService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolTaskExecutor executor;
+    private final int chunkSize;
+
+    // 最近的导入任务（含已结束的），超出上限时淘汰最早的
+    private final Map<String, ImportJob> jobs;
+
+    private final LongAdder submittedJobs = new LongAdder();
+    private final LongAdder rejectedJobs = new LongAdder();
+    private final LongAdder failedJobs = new LongAdder();
+    private final LongAdder importedRows = new LongAdder();
+    private final LongAdder duplicateRows = new LongAdder();
+    private final LongAdder invalidRows = new LongAdder();
+
+    public StatementImportService(
+            UserRepository userRepository,
+            AccountRepository accountRepository,
+            CategoryRepository categoryRepository,
+            TransactionBatchRepository transactionBatchRepository,
+            StatsRollupService statsRollupService,
+            ApplicationEventPublisher eventPublisher,
+            TransactionTemplate transactionTemplate,
+            @Qualifier("statementImportExecutor") ThreadPoolTaskExecutor executor,
+            @Value("${easybill.import.chunk-size:500}") int chunkSize,
+            @Value("${easybill.import.max-retained-jobs:100}") int maxRetainedJobs
+    ) {
+        this.userRepository = userRepository;
+        this.accountRepository = accountRepository;
+        this.categoryRepository = categoryRepository;
+        this.transactionBatchRepository = transactionBatchRepository;
+        this.statsRollupService = statsRollupService;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = transactionTemplate;
+        this.executor = executor;
+        this.chunkSize = chunkSize;
+        this.jobs = Collections.synchronizedMap(new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ImportJob> eldest) {
+                return size() > maxRetainedJobs;
+            }
+        });
+    }
+
+    /**
+     * 提交导入任务
+     * @param accountId 指定入账账户；为空时按文件中的卡号匹配
+     * @param charset 文件编码，银行导出文件常为 GBK
+     * @return 任务状态；导入队列已满时返回 empty
+     */
+    public Optional<StatementImportStatusDTO> submit(Long userId, MultipartFile file, Long accountId, String charset)
+            throws IOException {
+        if (file.isEmpty()) {
+            throw new IllegalArgumentException("文件为空");
+        }
+        Charset fileCharset = Charset.forName(charset);
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new IllegalArgumentException("用户不存在"));
+        Account account = null;
+        if (accountId != null) {
+            account = accountRepository.findById(accountId)
+                    .filter(a -> a.getUserId().equals(userId))
+                    .orElseThrow(() -> new IllegalArgumentException("账户不存在"));
+        }
+
+        // 请求结束后 multipart 临时文件会被清理，先转存一份
+        Path tempFile = Files.createTempFile("easybill-import-", ".csv");
+        file.transferTo(tempFile);
+
+        ImportJob job = new ImportJob(UUID.randomUUID().toString(), userId, file.getOriginalFilename(), file.getSize());
+        Account fixedAccount = account;
+        try {
+            executor.execute(() -> run(job, user, fixedAccount, tempFile, fileCharset));
+        } catch (TaskRejectedException e) {
+            rejectedJobs.increment();
+            deleteQuietly(tempFile);
+            log.warn("账单导入队列已满，拒绝请求，用户: {}", userId);
+            return Optional.empty();
+        }
+
+        jobs.put(job.id, job);
+        submittedJobs.increment();
+        log.info("账单导入已入队，任务: {}, 文件: {}, 大小: {}", job.id, job.fileName, job.totalBytes);
+        return Optional.of(job.toDTO());
+    }
+
+    /**
+     * 查询导入任务状态（只能查询自己的任务）
+     */
+    public Optional<StatementImportStatusDTO> getStatus(String jobId, Long userId) {
+        return Optional.ofNullable(jobs.get(jobId))
+                .filter(job -> job.userId.equals(userId))
+                .map(ImportJob::toDTO);
+    }
+
+    private void run(ImportJob job, User user, Account fixedAccount, Path tempFile, Charset charset) {
+        job.status = "RUNNING";
+        RowMapper mapper = new RowMapper(user, fixedAccount);
+
+        try (CountingInputStream input = new CountingInputStream(Files.newInputStream(tempFile));
+             CsvReader csv = new CsvReader(new BufferedReader(new InputStreamReader(input, charset)))) {
+            job.input = input;
+            Map<Column, Integer> columns = readHeader(csv);
+
+            List<Transaction> chunk = new ArrayList<>(chunkSize);
+            while (true) {
+                long line = csv.getLineNumber();
+                List<String> record = csv.readRecord();
+                if (record == null) {
+                    break;
+                }
+                if (isBlankRecord(record)) {
+                    continue;
+                }
+
+                job.processedRows++;
+                try {
+                    chunk.add(mapper.map(columns, record));
+                } catch (IllegalArgumentException e) {
+                    invalidRows.increment();
+                    job.invalidRows++;
+                    if (job.errors.size() < MAX_REPORTED_ERRORS) {
+                        job.errors.add("第 " + line + " 行: " + e.getMessage());
+                    }
+                }
+
+                if (chunk.size() >= chunkSize) {
+                    flush(job, user.getId(), chunk);
+                    chunk.clear();
+                }
+            }
+            flush(job, user.getId(), chunk);
+
+            job.status = "COMPLETED";
+            log.info("账单导入完成，任务: {}, 导入: {}, 重复: {}, 无效: {}",
+                    job.id, job.importedRows, job.duplicateRows, job.invalidRows);
+        } catch (Exception e) {
+            failedJobs.increment();
+            job.status = "FAILED";
+            job.errorMessage = e.getMessage();
+            log.error("账单导入失败，任务: {}: {}", job.id, e.getMessage(), e);
+        } finally {
+            job.finishedAt = LocalDateTime.now();
+            deleteQuietly(tempFile);
+        }
+    }
+
+    /**
+     * 跳过说明行，定位包含交易时间和金额列的表头
+     */
+    private Map<Column, Integer> readHeader(CsvReader csv) throws IOException {
+        for (int i = 0; i < HEADER_SCAN_LINES; i++) {
+            List<String> record = csv.readRecord();
+            if (record == null) {
+                break;
+            }
+
+            Map<Column, Integer> columns = new EnumMap<>(Column.class);
+            for (int index = 0; index < record.size(); index++) {
+                Column column = HEADER_ALIASES.get(normalizeHeader(record.get(index)));
+                if (column != null) {
+                    columns.putIfAbsent(column, index);
+                }
+            }
+            if (columns.containsKey(Column.TIME) && (columns.containsKey(Column.AMOUNT)
+                    || columns.containsKey(Column.INCOME) || columns.containsKey(Column.EXPENSE))) {
+                return columns;
+            }
+        }
+        throw new IllegalArgumentException("未找到表头：需包含交易时间和金额列");
+    }
+
+    /**
+     * 一块数据一个事务：剔除已存在的幂等键后批量插入，并合并更新统计汇总
+     */
+    private void flush(ImportJob job, Long userId, List<Transaction> chunk) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+
+        List<Transaction> fresh;
+        try {
+            fresh = insertChunk(chunk);
+        } catch (DuplicateKeyException e) {
+            // 并发导入了相同的行：整块已回滚，重新剔除已存在的幂等键后重试一次
+            log.info("导入块幂等键冲突，重试: {}", e.getMessage());
+            fresh = insertChunk(chunk);
+        }
+
+        int inserted = fresh != null ? fresh.size() : 0;
+        importedRows.add(inserted);
+        duplicateRows.add(chunk.size() - inserted);
+        job.importedRows += inserted;
+        job.duplicateRows += chunk.size() - inserted;
+        if (inserted > 0) {
+            eventPublisher.publishEvent(new TransactionChangedEvent(userId));
+        }
+    }
+
+    /**
+     * 在一个事务内插入一块数据
+     * @return 实际写入的行（按 batchUpdate 的逐行影响行数筛选），只有这些行计入统计汇总和导入条数
+     */
+    private List<Transaction> insertChunk(List<Transaction> chunk) {
+        return transactionTemplate.execute(status -> {
+            Set<String> keys = new LinkedHashSet<>();
+            chunk.forEach(transaction -> keys.add(transaction.getIdempotencyKey()));
+            Set<String> existing = transactionBatchRepository.findExistingKeys(keys);
+            List<Transaction> toInsert = new ArrayList<>(chunk.size());
+            for (Transaction transaction : chunk) {
+                // 同一块内的重复幂等键也只保留第一条
+                if (!existing.contains(transaction.getIdempotencyKey())
+                        && keys.remove(transaction.getIdempotencyKey())) {
+                    toInsert.add(transaction);
+                }
+            }
+
+            int[] counts = transactionBatchRepository.insertAll(toInsert);
+            List<Transaction> inserted = new ArrayList<>(toInsert.size());
+            for (int i = 0; i < toInsert.size(); i++) {
+                // SUCCESS_NO_INFO：多行 INSERT 整体成功，没有逐行结果；插入失败会抛出异常而不是返回 0
+                if (counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO) {
+                    inserted.add(toInsert.get(i));
+                }
+            }
+            statsRollupService.recordCreatedAll(inserted);
+            return inserted;
+        });
+    }
+
+    /**
+     * 行到交易的映射，账户和分类查询结果在任务内缓存
+     */
+    private class RowMapper {
+
+        private final User user;
+        private final Account fixedAccount;
+        private final Map<String, Optional<Account>> accountsByCard = new HashMap<>();
+        private final Map<String, Category> categoriesByName = new HashMap<>();
+
+        // 内容完全相同的行按出现次数区分，重复导入同一文件时得到相同的幂等键
+        private final Map<String, Integer> occurrences = new HashMap<>();
+
+        RowMapper(User user, Account fixedAccount) {
+            this.user = user;
+            this.fixedAccount = fixedAccount;
+            for (Category category : categoryRepository.findByUserIdOrUserIdIsNullOrderBySortOrder(user.getId())) {
+                // 用户自定义分类优先于系统分类
+                if (category.getUserId() != null || !categoriesByName.containsKey(category.getType() + "|" + category.getName())) {
+                    categoriesByName.put(category.getType() + "|" + category.getName(), category);
+                }
+            }
+        }
+
+        Transaction map(Map<Column, Integer> columns, List<String> record) {
+            LocalDateTime time = parseTime(cell(columns, record, Column.TIME));
+
+            BigDecimal amount;
+            TransactionType type;
+            String income = cell(columns, record, Column.INCOME);
+            String expense = cell(columns, record, Column.EXPENSE);
+            if (hasAmount(income)) {
+                amount = parseAmount(income);
+                type = TransactionType.INCOME;
+            } else if (hasAmount(expense)) {
+                amount = parseAmount(expense);
+                type = TransactionType.EXPENSE;
+            } else {
+                amount = parseAmount(cell(columns, record, Column.AMOUNT));
+                type = parseType(cell(columns, record, Column.TYPE));
+                if (type == null) {
+                    // 没有收支列时按金额符号判断
+                    type = amount.signum() < 0 ? TransactionType.EXPENSE : TransactionType.INCOME;
+                }
+            }
+            amount = amount.abs();
+            if (amount.signum() == 0) {
+                throw new IllegalArgumentException("金额为 0");
+            }
+
+            String merchant = truncate(cell(columns, record, Column.MERCHANT), 100);
+            String card = lastFourDigits(cell(columns, record, Column.CARD));
+            String serial = cell(columns, record, Column.SERIAL);
+
+            Transaction transaction = new Transaction();
+            transaction.setUser(user);
+            transaction.setAccount(fixedAccount != null ? fixedAccount : findAccount(card));
+            transaction.setCategory(findCategory(type, cell(columns, record, Column.CATEGORY)));
+            transaction.setType(type);
+            transaction.setAmount(amount);
+            transaction.setMerchant(merchant);
+            transaction.setTransactionTime(time);
+            transaction.setStatus(TransactionStatus.CONFIRMED);
+            transaction.setRemark(truncate(cell(columns, record, Column.REMARK), 255));
+            transaction.setIdempotencyKey(idempotencyKey(serial, time, type, amount, merchant, card));
+            return transaction;
+        }
+
+        private String idempotencyKey(String serial, LocalDateTime time, TransactionType type, BigDecimal amount,
+                                      String merchant, String card) {
+            String base;
+            if (serial != null) {
+                base = "import|" + user.getId() + "|serial|" + serial;
+            } else {
+                base = "import|" + user.getId() + "|" + time + "|" + type + "|" + amount.toPlainString()
+                        + "|" + (merchant != null ? merchant : "") + "|" + (card != null ? card : "");
+            }
+            int occurrence = occurrences.merge(base, 1, Integer::sum);
+            return DigestUtils.md5Hex(base + "|" + occurrence);
+        }
+
+        private Account findAccount(String card) {
+            if (card == null) {
+                return null;
+            }
+            return accountsByCard.computeIfAbsent(card,
+                    c -> accountRepository.findByUserIdAndLastFourDigits(user.getId(), c)).orElse(null);
+        }
+
+        private Category findCategory(TransactionType type, String name) {
+            return name != null ? categoriesByName.get(type.name() + "|" + name) : null;
+        }
+    }
+
+    private static String cell(Map<Column, Integer> columns, List<String> record, Column column) {
+        Integer index = columns.get(column);
+        if (index == null || index >= record.size()) {
+            return null;
+        }
+        String value = record.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static LocalDateTime parseTime(String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("缺少交易时间");
+        }
+        String text = value.replace('/', '-').replace('.', '-').replace('T', ' ').replaceAll("\\s+", " ");
+        for (DateTimeFormatter formatter : DATE_TIME_FORMATTERS) {
+            try {
+                return LocalDateTime.parse(text, formatter);
+            } catch (DateTimeParseException ignored) {
+                // 尝试下一种格式
+            }
+        }
+        for (DateTimeFormatter formatter : DATE_FORMATTERS) {
+            try {
+                return LocalDate.parse(text, formatter).atStartOfDay();
+            } catch (DateTimeParseException ignored) {
+                // 尝试下一种格式
+            }
+        }
+        throw new IllegalArgumentException("无法识别的交易时间: " + value);
+    }
+
+    private static boolean hasAmount(String value) {
+        if (value == null) {
+            return false;
+        }
+        try {
+            return parseAmount(value).signum() != 0;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static BigDecimal parseAmount(String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("缺少金额");
+        }
+        String text = value.replaceAll("[¥￥,，元\\s]", "");
+        try {
+            return new BigDecimal(text).setScale(2, RoundingMode.HALF_UP);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("无法识别的金额: " + value);
+        }
+    }
+
+    private static TransactionType parseType(String value) {
+        if (value == null) {
+            return null;
+        }
+        if (value.contains("不计")) {
+            throw new IllegalArgumentException("不计收支，已跳过");
+        }
+        for (String keyword : INCOME_KEYWORDS) {
+            if (value.equalsIgnoreCase(keyword) || value.contains(keyword)) {
+                return TransactionType.INCOME;
+            }
+        }
+        for (String keyword : EXPENSE_KEYWORDS) {
+            if (value.equalsIgnoreCase(keyword) || value.contains(keyword)) {
+                return TransactionType.EXPENSE;
+            }
+        }
+        return null;
+    }
+
+    private static String lastFourDigits(String value) {
+        if (value == null) {
+            return null;
+        }
+        String digits = value.replaceAll("\\D", "");
+        return digits.length() >= 4 ? digits.substring(digits.length() - 4) : null;
+    }
+
+    private static String truncate(String value, int maxLength) {
+        return value != null && value.length() > maxLength ? value.substring(0, maxLength) : value;
+    }
+
+    private static boolean isBlankRecord(List<String> record) {
+        return record.stream().allMatch(String::isBlank);
+    }
+
+    private static String normalizeHeader(String header) {
+        return header.replaceAll("\\s", "")
+                .replace("（元）", "")
+                .replace("(元)", "")
+                .toLowerCase();
+    }
+
+    private static void alias(Column column, String... names) {
+        for (String name : names) {
+            HEADER_ALIASES.put(normalizeHeader(name), column);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("删除导入临时文件失败: {}", file);
+        }
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "statement-import";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("activeJobs", executor.getActiveCount());
+        metrics.put("queueDepth", executor.getThreadPoolExecutor().getQueue().size());
+        metrics.put("submittedJobs", submittedJobs.sum());
+        metrics.put("rejectedJobs", rejectedJobs.sum());
+        metrics.put("failedJobs", failedJobs.sum());
+        metrics.put("importedRows", importedRows.sum());
+        metrics.put("duplicateRows", duplicateRows.sum());
+        metrics.put("invalidRows", invalidRows.sum());
+        return metrics;
+    }
+
+    private enum Column {
+        TIME, AMOUNT, INCOME, EXPENSE, TYPE, MERCHANT, REMARK, CARD, SERIAL, CATEGORY
+    }
+
+    /**
+     * 导入任务状态，仅由导入线程写入，查询线程读取
+     */
+    private static class ImportJob {
+        private final String id;
+        private final Long userId;
+        private final String fileName;
+        private final long totalBytes;
+        private final LocalDateTime createdAt = LocalDateTime.now();
+        private final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+
+        private volatile String status = "QUEUED";
+        private volatile CountingInputStream input;
+        private volatile long processedRows;
+        private volatile long importedRows;
+        private volatile long duplicateRows;
+        private volatile long invalidRows;
+        private volatile String errorMessage;
+        private volatile LocalDateTime finishedAt;
+
+        ImportJob(String id, Long userId, String fileName, long totalBytes) {
+            this.id = id;
+            this.userId = userId;
+            this.fileName = fileName;
+            this.totalBytes = totalBytes;
+        }
+
+        StatementImportStatusDTO toDTO() {
+            long processedBytes = "COMPLETED".equals(status) ? totalBytes
+                    : input != null ? Math.min(input.count, totalBytes) : 0;
+            return StatementImportStatusDTO.builder()
+                    .jobId(id)
+                    .fileName(fileName)
+                    .status(status)
+                    .totalBytes(totalBytes)
+                    .processedBytes(processedBytes)
+                    .progress(totalBytes > 0 ? (int) (processedBytes * 100 / totalBytes) : 0)
+                    .processedRows(processedRows)
+                    .importedRows(importedRows)
+                    .duplicateRows(duplicateRows)
+                    .invalidRows(invalidRows)
+                    .errors(List.copyOf(errors))
+                    .errorMessage(errorMessage)
+                    .createdAt(createdAt)
+                    .finishedAt(finishedAt)
+                    .build();
+        }
+    }
+
+    /**
+     * 统计已读取的字节数，用于估算导入进度
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        private volatile long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.easybill.service;
+
+import com.easybill.event.TransactionChangedEvent;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 统计结果缓存（本地 LRU，可选 Redis）
+ * 缓存键包含用户的数据版本号，交易变更事件在事务提交后递增版本号，旧结果随即不可见；
+ * 过期时间只作为兜底。开启 Redis 时版本号保存在 Redis 中，多实例之间同步失效
+ */
+@Slf4j
+@Service
+public class StatsCacheService implements MetricsSource {
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${easybill.stats.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${easybill.stats.cache.redis-enabled:false}")
+    private boolean redisEnabled;
+
+    @Value("${easybill.stats.cache.local-max-size:5000}")
+    private int localMaxSize;
+
+    @Value("${easybill.stats.cache.ttl-minutes:60}")
+    private long ttlMinutes;
+
+    private static final String CACHE_PREFIX = "easybill:stats-cache:";
+    private static final String VERSION_PREFIX = "easybill:stats-version:";
+
+    private LinkedHashMap<String, LocalEntry> localCache;
+
+    // 未开启 Redis 时的本地版本号
+    private final Map<Long, AtomicLong> localVersions = new ConcurrentHashMap<>();
+
+    private final LongAdder localHits = new LongAdder();
+    private final LongAdder redisHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder redisErrors = new LongAdder();
+
+    @PostConstruct
+    void init() {
+        localCache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, LocalEntry> eldest) {
+                if (size() > localMaxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 读取缓存，未命中时调用 loader 计算并写入
+     * @param query 查询类型和参数，如 "summary|2024-01-01T00:00|..."
+     */
+    public <T> T get(Long userId, String query, JavaType type, Supplier<T> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+
+        String key = userId + ":" + currentVersion(userId) + ":" + query;
+
+        @SuppressWarnings("unchecked")
+        T cached = (T) getLocal(key);
+        if (cached != null) {
+            localHits.increment();
+            return cached;
+        }
+
+        if (redisEnabled) {
+            cached = getRedis(key, type);
+            if (cached != null) {
+                redisHits.increment();
+                putLocal(key, cached);
+                return cached;
+            }
+        }
+
+        misses.increment();
+        T value = loader.get();
+        putLocal(key, value);
+        if (redisEnabled) {
+            putRedis(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * 交易变更后使该用户的全部统计缓存失效
+     * fallbackExecution：在事务外发布的事件（如异步解析流水线）也立即处理
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTransactionChanged(TransactionChangedEvent event) {
+        invalidate(event.userId());
+    }
+
+    public void invalidate(Long userId) {
+        if (!enabled || userId == null) {
+            return;
+        }
+        invalidations.increment();
+
+        if (redisEnabled) {
+            try {
+                redisTemplate.opsForValue().increment(VERSION_PREFIX + userId);
+            } catch (Exception e) {
+                redisErrors.increment();
+                log.warn("递增统计缓存版本号失败，用户: {}, 错误: {}", userId, e.getMessage());
+            }
+        }
+        localVersions.computeIfAbsent(userId, k -> new AtomicLong()).incrementAndGet();
+
+        // 旧版本的本地条目已不可达，顺带清理
+        String prefix = userId + ":";
+        synchronized (this) {
+            localCache.keySet().removeIf(key -> key.startsWith(prefix));
+        }
+    }
+
+    private String currentVersion(Long userId) {
+        long local = localVersions.computeIfAbsent(userId, k -> new AtomicLong()).get();
+        if (!redisEnabled) {
+            return String.valueOf(local);
+        }
+        try {
+            String version = redisTemplate.opsForValue().get(VERSION_PREFIX + userId);
+            return (version != null ? version : "0") + "." + local;
+        } catch (Exception e) {
+            // Redis 不可用时只用本地版本号，并避开 Redis 中可能过期的条目
+            redisErrors.increment();
+            return "local." + local;
+        }
+    }
+
+    private synchronized Object getLocal(String key) {
+        LocalEntry entry = localCache.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt() < System.currentTimeMillis()) {
+            localCache.remove(key);
+            return null;
+        }
+        return entry.value();
+    }
+
+    private synchronized void putLocal(String key, Object value) {
+        localCache.put(key, new LocalEntry(value, System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(ttlMinutes)));
+    }
+
+    private <T> T getRedis(String key, JavaType type) {
+        try {
+            String json = redisTemplate.opsForValue().get(CACHE_PREFIX + key);
+            return json != null ? objectMapper.readValue(json, type) : null;
+        } catch (Exception e) {
+            redisErrors.increment();
+            log.debug("读取 Redis 统计缓存失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void putRedis(String key, Object value) {
+        try {
+            redisTemplate.opsForValue().set(
+                CACHE_PREFIX + key, objectMapper.writeValueAsString(value), ttlMinutes, TimeUnit.MINUTES
+            );
+        } catch (Exception e) {
+            redisErrors.increment();
+            log.debug("写入 Redis 统计缓存失败: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "stats-cache";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        long hits = localHits.sum() + redisHits.sum();
+        long total = hits + misses.sum();
+        int localSize;
+        synchronized (this) {
+            localSize = localCache.size();
+        }
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("redisEnabled", redisEnabled);
+        metrics.put("localSize", localSize);
+        metrics.put("localHits", localHits.sum());
+        metrics.put("redisHits", redisHits.sum());
+        metrics.put("misses", misses.sum());
+        metrics.put("hitRatio", total > 0 ? (double) hits / total : 0.0);
+        metrics.put("invalidations", invalidations.sum());
+        metrics.put("evictions", evictions.sum());
+        metrics.put("redisErrors", redisErrors.sum());
+        return metrics;
+    }
+
+    private record LocalEntry(Object value, long expiresAt) {
+    }
+}
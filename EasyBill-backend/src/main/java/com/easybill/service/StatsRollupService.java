@@ -0,0 +1,391 @@
+package com.easybill.service;
+
+import com.easybill.dto.RollupCheckReport;
+import com.easybill.entity.Transaction;
+import com.easybill.entity.TransactionType;
+import com.easybill.event.TransactionChangedEvent;
+import com.easybill.repository.StatsRollupRepository;
+import com.easybill.repository.StatsRollupRepository.BucketKey;
+import com.easybill.repository.StatsRollupRepository.BucketValue;
+import com.easybill.repository.TransactionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 统计日汇总维护
+ * 交易增删改时按差值更新 stats_daily_rollups，统计查询按天汇总桶求和，
+ * 不完整的首尾两天仍从交易明细聚合。汇总出错不影响主流程，可通过重建和一致性检查修复
+ */
+@Slf4j
+@Service
+public class StatsRollupService implements MetricsSource {
+
+    private static final int MAX_REPORTED_MISMATCHES = 100;
+
+    private final StatsRollupRepository statsRollupRepository;
+    private final TransactionRepository transactionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final boolean enabled;
+
+    private final LongAdder deltasApplied = new LongAdder();
+    private final LongAdder deltaErrors = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder mismatchesFound = new LongAdder();
+
+    public StatsRollupService(
+            StatsRollupRepository statsRollupRepository,
+            TransactionRepository transactionRepository,
+            TransactionTemplate transactionTemplate,
+            ApplicationEventPublisher eventPublisher,
+            @Value("${easybill.stats.rollup.enabled:false}") boolean enabled
+    ) {
+        this.statsRollupRepository = statsRollupRepository;
+        this.transactionRepository = transactionRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.enabled = enabled;
+    }
+
+    /**
+     * 交易在某一时刻所属的汇总桶及金额，用于计算修改前后的差值
+     */
+    public record Snapshot(Long userId, LocalDate statDate, Long categoryId, TransactionType type, BigDecimal amount) {
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Snapshot snapshot(Transaction transaction) {
+        if (transaction == null || transaction.getUser() == null || transaction.getTransactionTime() == null
+                || transaction.getType() == null || transaction.getAmount() == null) {
+            return null;
+        }
+        return new Snapshot(
+                transaction.getUser().getId(),
+                transaction.getTransactionTime().toLocalDate(),
+                transaction.getCategory() != null ? transaction.getCategory().getId() : 0L,
+                transaction.getType(),
+                transaction.getAmount()
+        );
+    }
+
+    public void recordCreated(Transaction transaction) {
+        recordChanged(null, snapshot(transaction));
+    }
+
+    /**
+     * 批量新增：同一个桶的交易先合并，每个桶只写一次库
+     */
+    public void recordCreatedAll(List<Transaction> transactions) {
+        if (!enabled || transactions.isEmpty()) {
+            return;
+        }
+        Map<Snapshot, BucketValue> buckets = new LinkedHashMap<>();
+        for (Transaction transaction : transactions) {
+            Snapshot snapshot = snapshot(transaction);
+            if (snapshot == null) {
+                continue;
+            }
+            Snapshot bucket = new Snapshot(snapshot.userId(), snapshot.statDate(), snapshot.categoryId(),
+                    snapshot.type(), BigDecimal.ZERO);
+            buckets.merge(bucket, new BucketValue(snapshot.amount(), 1),
+                    (a, b) -> new BucketValue(a.totalAmount().add(b.totalAmount()),
+                            a.transactionCount() + b.transactionCount()));
+        }
+        try {
+            buckets.forEach((bucket, value) -> statsRollupRepository.applyDelta(bucket.userId(), bucket.statDate(),
+                    bucket.categoryId(), bucket.type(), value.totalAmount(), (int) value.transactionCount()));
+            deltasApplied.add(buckets.size());
+        } catch (Exception e) {
+            deltaErrors.increment();
+            log.error("批量更新统计汇总失败，需重建: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 选中交易当前所属的桶（批量修改前在同一事务内调用）；未开启汇总时返回空
+     */
+    public Map<BucketKey, BucketValue> bucketsOf(Long userId, Collection<Long> ids) {
+        if (!enabled || ids.isEmpty()) {
+            return Map.of();
+        }
+        return statsRollupRepository.loadRawBuckets(userId, ids);
+    }
+
+    /**
+     * 批量删除：按桶扣除
+     */
+    public void recordBulkDeleted(Long userId, Map<BucketKey, BucketValue> buckets) {
+        applyBuckets(userId, buckets, Map.of());
+    }
+
+    /**
+     * 批量修改分类：从原分类的桶移到新分类的桶
+     */
+    public void recordBulkRecategorized(Long userId, Map<BucketKey, BucketValue> buckets, Long categoryId) {
+        long newCategoryId = categoryId != null ? categoryId : 0L;
+        Map<BucketKey, BucketValue> removed = new LinkedHashMap<>();
+        Map<BucketKey, BucketValue> added = new LinkedHashMap<>();
+        buckets.forEach((key, value) -> {
+            if (key.categoryId() == newCategoryId) {
+                return;
+            }
+            removed.put(key, value);
+            added.merge(new BucketKey(key.statDate(), newCategoryId, key.type()), value,
+                    (a, b) -> new BucketValue(a.totalAmount().add(b.totalAmount()),
+                            a.transactionCount() + b.transactionCount()));
+        });
+        applyBuckets(userId, removed, added);
+    }
+
+    private void applyBuckets(Long userId, Map<BucketKey, BucketValue> removed, Map<BucketKey, BucketValue> added) {
+        if (!enabled || (removed.isEmpty() && added.isEmpty())) {
+            return;
+        }
+        try {
+            removed.forEach((key, value) -> statsRollupRepository.applyDelta(userId, key.statDate(), key.categoryId(),
+                    key.type(), value.totalAmount().negate(), (int) -value.transactionCount()));
+            added.forEach((key, value) -> statsRollupRepository.applyDelta(userId, key.statDate(), key.categoryId(),
+                    key.type(), value.totalAmount(), (int) value.transactionCount()));
+            deltasApplied.add(removed.size() + added.size());
+        } catch (Exception e) {
+            deltaErrors.increment();
+            log.error("批量更新统计汇总失败，需重建: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 删除分类：该分类的桶并入未分类，与交易表 ON DELETE SET NULL 的结果保持一致（须在删除分类的事务内调用）
+     * @return 受影响的用户；未开启汇总时返回空
+     */
+    public List<Long> recordCategoryDeleted(Long categoryId) {
+        if (!enabled) {
+            return List.of();
+        }
+        try {
+            return statsRollupRepository.mergeIntoUncategorized(categoryId);
+        } catch (Exception e) {
+            deltaErrors.increment();
+            log.error("合并已删除分类的统计汇总失败，需重建，分类: {}, 错误: {}", categoryId, e.getMessage(), e);
+            return List.of();
+        }
+    }
+
+    public void recordDeleted(Snapshot before) {
+        recordChanged(before, null);
+    }
+
+    /**
+     * 记录交易变化：从旧桶扣除、向新桶累加；只改状态等不影响桶的字段时不写库
+     */
+    public void recordChanged(Snapshot before, Snapshot after) {
+        if (!enabled || Objects.equals(before, after)) {
+            return;
+        }
+        try {
+            if (before != null) {
+                statsRollupRepository.applyDelta(before.userId(), before.statDate(), before.categoryId(),
+                        before.type(), before.amount().negate(), -1);
+            }
+            if (after != null) {
+                statsRollupRepository.applyDelta(after.userId(), after.statDate(), after.categoryId(),
+                        after.type(), after.amount(), 1);
+            }
+            deltasApplied.increment();
+        } catch (Exception e) {
+            deltaErrors.increment();
+            log.error("更新统计汇总失败，需重建: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 按类型汇总：整天部分读汇总表，不满一天的首尾部分读交易明细
+     */
+    public List<TransactionRepository.TypeTotal> sumByType(Long userId, LocalDateTime startDate, LocalDateTime endDate) {
+        List<TransactionRepository.TypeTotal> rows = new ArrayList<>();
+        DayRange range = DayRange.of(startDate, endDate);
+        if (range.fullDays()) {
+            rows.addAll(statsRollupRepository.sumByType(userId, range.firstDay(), range.lastDay()));
+        }
+        for (LocalDateTime[] edge : range.edges()) {
+            rows.addAll(transactionRepository.sumByType(userId, edge[0], edge[1]));
+        }
+        return rows;
+    }
+
+    /**
+     * 按分类汇总，首尾处理同 sumByType
+     */
+    public List<TransactionRepository.CategoryTotal> sumByCategory(Long userId, TransactionType type,
+                                                                   LocalDateTime startDate, LocalDateTime endDate) {
+        List<TransactionRepository.CategoryTotal> rows = new ArrayList<>();
+        DayRange range = DayRange.of(startDate, endDate);
+        if (range.fullDays()) {
+            rows.addAll(statsRollupRepository.sumByCategory(userId, type, range.firstDay(), range.lastDay()));
+        }
+        for (LocalDateTime[] edge : range.edges()) {
+            rows.addAll(transactionRepository.sumByCategory(userId, type, edge[0], edge[1]));
+        }
+        return rows;
+    }
+
+    /**
+     * 用交易明细重建单个用户的汇总
+     * @return 重建后的桶数
+     */
+    public int rebuild(Long userId) {
+        Integer buckets = transactionTemplate.execute(status -> statsRollupRepository.rebuildUser(userId));
+        rebuilds.increment();
+        // 重建可能修正了统计结果，已缓存的结果随之失效
+        eventPublisher.publishEvent(new TransactionChangedEvent(userId));
+        log.info("统计汇总已重建，用户: {}, 桶数: {}", userId, buckets);
+        return buckets != null ? buckets : 0;
+    }
+
+    /**
+     * 重建全部用户的汇总（回填历史数据）
+     * @return 处理的用户数
+     */
+    public int rebuildAll() {
+        List<Long> userIds = statsRollupRepository.findUserIds();
+        for (Long userId : userIds) {
+            rebuild(userId);
+        }
+        return userIds.size();
+    }
+
+    /**
+     * 对比汇总表与交易明细
+     * @param repair 存在差异时是否立即重建该用户
+     */
+    public RollupCheckReport check(Long userId, boolean repair) {
+        Map<BucketKey, BucketValue> raw = statsRollupRepository.loadRawBuckets(userId);
+        Map<BucketKey, BucketValue> rollup = statsRollupRepository.loadRollupBuckets(userId);
+
+        Set<BucketKey> keys = new HashSet<>(raw.keySet());
+        keys.addAll(rollup.keySet());
+
+        int mismatchCount = 0;
+        List<String> mismatches = new ArrayList<>();
+        for (BucketKey key : keys) {
+            BucketValue expected = raw.get(key);
+            BucketValue actual = rollup.get(key);
+            if (sameValue(expected, actual)) {
+                continue;
+            }
+            mismatchCount++;
+            if (mismatches.size() < MAX_REPORTED_MISMATCHES) {
+                mismatches.add(String.format("%s 分类 %d %s: 明细 %s, 汇总 %s",
+                        key.statDate(), key.categoryId(), key.type(), describe(expected), describe(actual)));
+            }
+        }
+
+        checks.increment();
+        mismatchesFound.add(mismatchCount);
+        if (mismatchCount > 0) {
+            log.warn("统计汇总不一致，用户: {}, 差异桶数: {}", userId, mismatchCount);
+        }
+
+        boolean repaired = repair && mismatchCount > 0;
+        if (repaired) {
+            rebuild(userId);
+        }
+
+        return RollupCheckReport.builder()
+                .userId(userId)
+                .bucketsChecked(keys.size())
+                .mismatchCount(mismatchCount)
+                .mismatches(mismatches)
+                .repaired(repaired)
+                .build();
+    }
+
+    private boolean sameValue(BucketValue expected, BucketValue actual) {
+        if (expected == null || actual == null) {
+            return expected == actual;
+        }
+        return expected.transactionCount() == actual.transactionCount()
+                && expected.totalAmount().compareTo(actual.totalAmount()) == 0;
+    }
+
+    private String describe(BucketValue value) {
+        return value == null ? "无" : value.totalAmount() + " / " + value.transactionCount() + " 笔";
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "stats-rollup";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("deltasApplied", deltasApplied.sum());
+        metrics.put("deltaErrors", deltaErrors.sum());
+        metrics.put("rebuilds", rebuilds.sum());
+        metrics.put("checks", checks.sum());
+        metrics.put("mismatchesFound", mismatchesFound.sum());
+        return metrics;
+    }
+
+    /**
+     * 把 [startDate, endDate] 拆成整天部分 [firstDay, lastDay] 和不满一天的首尾部分
+     * 交易时间为秒级精度（DATETIME），首尾边界按秒切分
+     */
+    private record DayRange(LocalDate firstDay, LocalDate lastDay, List<LocalDateTime[]> edges) {
+
+        static DayRange of(LocalDateTime startDate, LocalDateTime endDate) {
+            // 与原有行为一致：只有同时给出开始和结束时间才按时间范围统计
+            if (startDate == null || endDate == null) {
+                return new DayRange(null, null, List.of());
+            }
+
+            LocalDate firstDay = startDate.toLocalTime().equals(LocalTime.MIDNIGHT)
+                    ? startDate.toLocalDate()
+                    : startDate.toLocalDate().plusDays(1);
+            LocalDate lastDay = !endDate.toLocalTime().isBefore(LocalTime.of(23, 59, 59))
+                    ? endDate.toLocalDate()
+                    : endDate.toLocalDate().minusDays(1);
+
+            if (firstDay.isAfter(lastDay)) {
+                // 不含完整的一天，全部读明细
+                return new DayRange(LocalDate.MAX, LocalDate.MIN, List.<LocalDateTime[]>of(new LocalDateTime[]{startDate, endDate}));
+            }
+
+            List<LocalDateTime[]> edges = new ArrayList<>(2);
+            if (startDate.isBefore(firstDay.atStartOfDay())) {
+                edges.add(new LocalDateTime[]{startDate, firstDay.atStartOfDay().minusSeconds(1)});
+            }
+            LocalDateTime afterLastDay = lastDay.plusDays(1).atStartOfDay();
+            if (!endDate.isBefore(afterLastDay)) {
+                edges.add(new LocalDateTime[]{afterLastDay, endDate});
+            }
+            return new DayRange(firstDay, lastDay, edges);
+        }
+
+        boolean fullDays() {
+            return firstDay == null || !firstDay.isAfter(lastDay);
+        }
+    }
+}
@@ -2,50 +2,212 @@ package com.easybill.service;
 
 import com.easybill.dto.CategoryStatsDTO;
 import com.easybill.dto.StatsSummaryDTO;
-import com.easybill.entity.Transaction;
 import com.easybill.entity.TransactionType;
+import com.easybill.dto.TimeSeriesDTO;
+import com.easybill.repository.StatsTimeSeriesRepository;
 import com.easybill.repository.TransactionRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.TreeMap;
 
+/**
+ * 统计服务
+ * 汇总在数据库中完成（SUM / COUNT / GROUP BY），只返回分组后的少量行，
+ * 内存占用与用户的交易条数无关；开启日汇总表后按天汇总桶求和，不再扫描交易明细。
+ * 结果经 StatsCacheService 缓存，交易变更时失效
+ */
 @Service
 @RequiredArgsConstructor
 public class StatsService {
 
+    // 单次趋势查询的最大桶数（约 5 年的日数据）
+    private static final int MAX_BUCKETS = 2000;
+
     private final TransactionRepository transactionRepository;
+    private final StatsRollupService statsRollupService;
+    private final StatsCacheService statsCacheService;
+    private final StatsTimeSeriesRepository statsTimeSeriesRepository;
+    private final ObjectMapper objectMapper;
 
     /**
      * 获取统计摘要
      */
     public StatsSummaryDTO getSummary(Long userId, LocalDateTime startDate, LocalDateTime endDate) {
-        List<Transaction> transactions;
-        
-        if (startDate != null && endDate != null) {
-            transactions = transactionRepository.findByUser_IdAndTransactionTimeBetween(userId, startDate, endDate);
-        } else {
-            transactions = transactionRepository.findByUser_IdOrderByTransactionTimeDesc(userId);
+        return statsCacheService.get(
+                userId,
+                "summary|" + startDate + "|" + endDate,
+                objectMapper.constructType(StatsSummaryDTO.class),
+                () -> computeSummary(userId, startDate, endDate)
+        );
+    }
+
+    /**
+     * 获取分类统计
+     */
+    public List<CategoryStatsDTO> getCategoryStats(Long userId, TransactionType type, LocalDateTime startDate, LocalDateTime endDate) {
+        return statsCacheService.get(
+                userId,
+                "categories|" + type + "|" + startDate + "|" + endDate,
+                objectMapper.getTypeFactory().constructCollectionType(List.class, CategoryStatsDTO.class),
+                () -> computeCategoryStats(userId, type, startDate, endDate)
+        );
+    }
+
+    /**
+     * 获取趋势数据（按日/周/月分桶，可按分类或账户拆分，空桶补 0）
+     * @throws IllegalArgumentException 时间范围无效或桶数超过上限
+     */
+    public TimeSeriesDTO getTimeSeries(Long userId, TimeSeriesDTO.Interval interval, TimeSeriesDTO.Split split,
+                                       TransactionType type, LocalDate startDate, LocalDate endDate) {
+        LocalDate end = endDate != null ? endDate : LocalDate.now();
+        LocalDate start = startDate != null ? startDate : switch (interval) {
+            case DAY -> end.minusDays(29);
+            case WEEK -> end.minusWeeks(11);
+            case MONTH -> end.minusMonths(11).withDayOfMonth(1);
+        };
+        if (start.isAfter(end)) {
+            throw new IllegalArgumentException("开始日期不能晚于结束日期");
         }
-        
+        long buckets = switch (interval) {
+            case DAY -> ChronoUnit.DAYS.between(start, end) + 1;
+            case WEEK -> ChronoUnit.WEEKS.between(bucketStart(start, interval), end) + 1;
+            case MONTH -> ChronoUnit.MONTHS.between(bucketStart(start, interval), end) + 1;
+        };
+        if (buckets > MAX_BUCKETS) {
+            throw new IllegalArgumentException("时间桶过多（" + buckets + "），请缩小范围或使用更大的时间粒度");
+        }
+
+        return statsCacheService.get(
+                userId,
+                "timeseries|" + interval + "|" + split + "|" + type + "|" + start + "|" + end,
+                objectMapper.constructType(TimeSeriesDTO.class),
+                () -> computeTimeSeries(userId, interval, split, type, start, end)
+        );
+    }
+
+    private TimeSeriesDTO computeTimeSeries(Long userId, TimeSeriesDTO.Interval interval, TimeSeriesDTO.Split split,
+                                           TransactionType type, LocalDate start, LocalDate end) {
+        // 日汇总表覆盖整天，没有账户维度
+        List<StatsTimeSeriesRepository.BucketRow> rows = statsRollupService.isEnabled() && split != TimeSeriesDTO.Split.ACCOUNT
+                ? statsTimeSeriesRepository.aggregateRollups(userId, interval, split, type, start, end)
+                : statsTimeSeriesRepository.aggregateTransactions(userId, interval, split, type, start, end);
+        return buildTimeSeries(rows, interval, split, start, end);
+    }
+
+    /**
+     * 把按桶聚合的行组装为曲线，补齐没有交易的桶
+     */
+    static TimeSeriesDTO buildTimeSeries(List<StatsTimeSeriesRepository.BucketRow> rows, TimeSeriesDTO.Interval interval,
+                                         TimeSeriesDTO.Split split, LocalDate start, LocalDate end) {
+        // 分组 -> (桶 -> 数据点)
+        Map<Long, String> groupNames = new LinkedHashMap<>();
+        Map<Long, Map<LocalDate, TimeSeriesDTO.Point>> pointsByGroup = new LinkedHashMap<>();
+        if (split == TimeSeriesDTO.Split.NONE) {
+            groupNames.put(0L, null);
+            pointsByGroup.put(0L, new TreeMap<>());
+        }
+        for (StatsTimeSeriesRepository.BucketRow row : rows) {
+            groupNames.putIfAbsent(row.groupId(), row.groupName());
+            TimeSeriesDTO.Point point = pointsByGroup
+                    .computeIfAbsent(row.groupId(), k -> new TreeMap<>())
+                    .computeIfAbsent(row.period(), StatsService::emptyPoint);
+            if (row.type() == TransactionType.INCOME) {
+                point.setIncome(point.getIncome().add(row.totalAmount()));
+                point.setIncomeCount(point.getIncomeCount() + (int) row.transactionCount());
+            } else {
+                point.setExpense(point.getExpense().add(row.totalAmount()));
+                point.setExpenseCount(point.getExpenseCount() + (int) row.transactionCount());
+            }
+        }
+
+        // 补齐没有交易的桶
+        List<LocalDate> periods = new ArrayList<>();
+        for (LocalDate period = bucketStart(start, interval); !period.isAfter(end); period = nextBucket(period, interval)) {
+            periods.add(period);
+        }
+
+        List<TimeSeriesDTO.Series> series = new ArrayList<>(pointsByGroup.size());
+        for (Map.Entry<Long, Map<LocalDate, TimeSeriesDTO.Point>> entry : pointsByGroup.entrySet()) {
+            List<TimeSeriesDTO.Point> points = new ArrayList<>(periods.size());
+            for (LocalDate period : periods) {
+                TimeSeriesDTO.Point point = entry.getValue().get(period);
+                points.add(point != null ? point : emptyPoint(period));
+            }
+            series.add(TimeSeriesDTO.Series.builder()
+                    .groupId(split == TimeSeriesDTO.Split.NONE ? null : entry.getKey())
+                    .groupName(groupNames.get(entry.getKey()))
+                    .points(points)
+                    .build());
+        }
+
+        return TimeSeriesDTO.builder()
+                .interval(interval)
+                .split(split)
+                .startDate(start)
+                .endDate(end)
+                .series(series)
+                .build();
+    }
+
+    private static TimeSeriesDTO.Point emptyPoint(LocalDate period) {
+        return TimeSeriesDTO.Point.builder()
+                .period(period)
+                .income(BigDecimal.ZERO)
+                .expense(BigDecimal.ZERO)
+                .incomeCount(0)
+                .expenseCount(0)
+                .build();
+    }
+
+    private static LocalDate bucketStart(LocalDate date, TimeSeriesDTO.Interval interval) {
+        return switch (interval) {
+            case DAY -> date;
+            case WEEK -> date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTH -> date.withDayOfMonth(1);
+        };
+    }
+
+    private static LocalDate nextBucket(LocalDate period, TimeSeriesDTO.Interval interval) {
+        return switch (interval) {
+            case DAY -> period.plusDays(1);
+            case WEEK -> period.plusWeeks(1);
+            case MONTH -> period.plusMonths(1);
+        };
+    }
+
+    private StatsSummaryDTO computeSummary(Long userId, LocalDateTime startDate, LocalDateTime endDate) {
+        return summarize(sumByType(userId, startDate, endDate));
+    }
+
+    /**
+     * 按收支类型的汇总行计算摘要
+     */
+    static StatsSummaryDTO summarize(List<TransactionRepository.TypeTotal> typeTotals) {
         BigDecimal totalIncome = BigDecimal.ZERO;
         BigDecimal totalExpense = BigDecimal.ZERO;
         int incomeCount = 0;
         int expenseCount = 0;
         
-        for (Transaction transaction : transactions) {
-            if (transaction.getType() == TransactionType.INCOME) {
-                totalIncome = totalIncome.add(transaction.getAmount());
-                incomeCount++;
-            } else if (transaction.getType() == TransactionType.EXPENSE) {
-                totalExpense = totalExpense.add(transaction.getAmount());
-                expenseCount++;
+        for (TransactionRepository.TypeTotal row : typeTotals) {
+            if (row.getType() == TransactionType.INCOME) {
+                totalIncome = totalIncome.add(row.getTotalAmount());
+                incomeCount += row.getTransactionCount().intValue();
+            } else if (row.getType() == TransactionType.EXPENSE) {
+                totalExpense = totalExpense.add(row.getTotalAmount());
+                expenseCount += row.getTransactionCount().intValue();
             }
         }
         
@@ -53,68 +215,69 @@ public class StatsService {
                 .totalIncome(totalIncome)
                 .totalExpense(totalExpense)
                 .balance(totalIncome.subtract(totalExpense))
-                .transactionCount(transactions.size())
+                .transactionCount(incomeCount + expenseCount)
                 .incomeCount(incomeCount)
                 .expenseCount(expenseCount)
                 .build();
     }
 
-    /**
-     * 获取分类统计
-     */
-    public List<CategoryStatsDTO> getCategoryStats(Long userId, TransactionType type, LocalDateTime startDate, LocalDateTime endDate) {
-        List<Transaction> transactions;
+    private List<CategoryStatsDTO> computeCategoryStats(Long userId, TransactionType type, LocalDateTime startDate, LocalDateTime endDate) {
+        List<TransactionRepository.TypeTotal> typeTotals = sumByType(userId, startDate, endDate);
         
-        if (startDate != null && endDate != null) {
-            transactions = transactionRepository.findByUser_IdAndTransactionTimeBetween(userId, startDate, endDate);
+        List<TransactionRepository.CategoryTotal> rows;
+        if (statsRollupService.isEnabled()) {
+            rows = statsRollupService.sumByCategory(userId, type, startDate, endDate);
         } else {
-            transactions = transactionRepository.findByUser_IdOrderByTransactionTimeDesc(userId);
+            boolean hasRange = startDate != null && endDate != null;
+            rows = transactionRepository.sumByCategory(
+                    userId, type, hasRange ? startDate : null, hasRange ? endDate : null);
         }
-        
-        // 按类型筛选
-        if (type != null) {
-            transactions = transactions.stream()
-                    .filter(t -> t.getType() == type)
-                    .collect(Collectors.toList());
+        return mergeCategoryStats(typeTotals, type, rows);
+    }
+
+    /**
+     * 合并分类汇总行并计算占比
+     */
+    static List<CategoryStatsDTO> mergeCategoryStats(List<TransactionRepository.TypeTotal> typeTotals, TransactionType type,
+                                                     List<TransactionRepository.CategoryTotal> rows) {
+        // 计算总金额（用于计算百分比，包含未分类的交易）
+        BigDecimal totalAmount = BigDecimal.ZERO;
+        for (TransactionRepository.TypeTotal row : typeTotals) {
+            if (type == null || row.getType() == type) {
+                totalAmount = totalAmount.add(row.getTotalAmount());
+            }
         }
         
-        // 按分类分组统计
-        Map<Long, List<Transaction>> groupedByCategory = transactions.stream()
-                .filter(t -> t.getCategory() != null)
-                .collect(Collectors.groupingBy(t -> t.getCategory().getId()));
-        
-        // 计算总金额（用于计算百分比）
-        BigDecimal totalAmount = transactions.stream()
-                .map(Transaction::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        
-        List<CategoryStatsDTO> stats = new ArrayList<>();
+        // 同一分类下出现多种收支类型时合并为一行，类型取金额较大的一方
+        Map<Long, CategoryStatsDTO> byCategory = new LinkedHashMap<>();
+        for (TransactionRepository.CategoryTotal row : rows) {
+            CategoryStatsDTO stat = byCategory.get(row.getCategoryId());
+            if (stat == null) {
+                byCategory.put(row.getCategoryId(), CategoryStatsDTO.builder()
+                        .categoryId(row.getCategoryId())
+                        .categoryName(row.getCategoryName())
+                        .type(row.getType().name())
+                        .totalAmount(row.getTotalAmount())
+                        .transactionCount(row.getTransactionCount().intValue())
+                        .build());
+                continue;
+            }
+            if (row.getTotalAmount().compareTo(stat.getTotalAmount()) > 0) {
+                stat.setType(row.getType().name());
+            }
+            stat.setTotalAmount(stat.getTotalAmount().add(row.getTotalAmount()));
+            stat.setTransactionCount(stat.getTransactionCount() + row.getTransactionCount().intValue());
+        }
         
-        for (Map.Entry<Long, List<Transaction>> entry : groupedByCategory.entrySet()) {
-            List<Transaction> categoryTransactions = entry.getValue();
-            Transaction firstTransaction = categoryTransactions.get(0);
-            
-            BigDecimal categoryTotal = categoryTransactions.stream()
-                    .map(Transaction::getAmount)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-            
+        List<CategoryStatsDTO> stats = new ArrayList<>(byCategory.values());
+        for (CategoryStatsDTO stat : stats) {
             double percentage = 0.0;
             if (totalAmount.compareTo(BigDecimal.ZERO) > 0) {
-                percentage = categoryTotal.divide(totalAmount, 4, RoundingMode.HALF_UP)
+                percentage = stat.getTotalAmount().divide(totalAmount, 4, RoundingMode.HALF_UP)
                         .multiply(BigDecimal.valueOf(100))
                         .doubleValue();
             }
-            
-            CategoryStatsDTO stat = CategoryStatsDTO.builder()
-                    .categoryId(firstTransaction.getCategory().getId())
-                    .categoryName(firstTransaction.getCategory().getName())
-                    .type(firstTransaction.getType().name())
-                    .totalAmount(categoryTotal)
-                    .transactionCount(categoryTransactions.size())
-                    .percentage(percentage)
-                    .build();
-            
-            stats.add(stat);
+            stat.setPercentage(percentage);
         }
         
         // 按金额降序排序
@@ -122,4 +285,15 @@ public class StatsService {
         
         return stats;
     }
+    
+    private List<TransactionRepository.TypeTotal> sumByType(Long userId, LocalDateTime startDate, LocalDateTime endDate) {
+        if (statsRollupService.isEnabled()) {
+            return statsRollupService.sumByType(userId, startDate, endDate);
+        }
+        // 与原有行为一致：只有同时给出开始和结束时间才按时间范围统计
+        if (startDate != null && endDate != null) {
+            return transactionRepository.sumByType(userId, startDate, endDate);
+        }
+        return transactionRepository.sumByType(userId, null, null);
+    }
 }
@@ -0,0 +1,321 @@
+package com.easybill.service;
+
+import com.easybill.dto.TransactionDTO;
+import com.easybill.event.TransactionChangedEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 交易变更推送（SSE）
+ * 事务提交后把新增、修改、删除的交易推送给该用户的全部 SSE 连接，前端按增量更新列表而不是轮询查询。
+ * 每个事件只序列化一次，由独立线程池写给各连接；开启 Redis 转发时事件同时发布到 Redis 频道，
+ * 其他实例收到后推送给各自本机的连接。事件不落盘，连接（重连）后前端需先刷新一次列表
+ */
+@Slf4j
+@Service
+public class TransactionEventService implements MetricsSource {
+
+    private static final String CHANNEL = "easybill:transaction-events";
+
+    private final ObjectMapper objectMapper;
+    private final RedisTemplate<String, String> redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final ThreadPoolTaskExecutor executor;
+    private final long timeoutMs;
+    private final int maxConnections;
+    private final int maxConnectionsPerUser;
+    private final long reconnectMs;
+    private final boolean redisBridgeEnabled;
+
+    // 本实例标识，忽略 Redis 频道中自己发布的事件
+    private final String nodeId = UUID.randomUUID().toString();
+
+    // 用户 ID -> 该用户在本实例上的 SSE 连接
+    private final Map<Long, List<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder sendFailures = new LongAdder();
+    private final LongAdder rejectedConnections = new LongAdder();
+    private final LongAdder redisPublished = new LongAdder();
+    private final LongAdder redisReceived = new LongAdder();
+    private final LongAdder redisErrors = new LongAdder();
+
+    public TransactionEventService(
+            ObjectMapper objectMapper,
+            RedisTemplate<String, String> redisTemplate,
+            RedisMessageListenerContainer listenerContainer,
+            @Qualifier("transactionEventExecutor") ThreadPoolTaskExecutor executor,
+            @Value("${easybill.events.timeout-minutes:30}") long timeoutMinutes,
+            @Value("${easybill.events.max-connections:10000}") int maxConnections,
+            @Value("${easybill.events.max-connections-per-user:5}") int maxConnectionsPerUser,
+            @Value("${easybill.events.reconnect-ms:3000}") long reconnectMs,
+            @Value("${easybill.events.redis-bridge-enabled:false}") boolean redisBridgeEnabled
+    ) {
+        this.objectMapper = objectMapper;
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.executor = executor;
+        this.timeoutMs = TimeUnit.MINUTES.toMillis(timeoutMinutes);
+        this.maxConnections = maxConnections;
+        this.maxConnectionsPerUser = maxConnectionsPerUser;
+        this.reconnectMs = reconnectMs;
+        this.redisBridgeEnabled = redisBridgeEnabled;
+    }
+
+    @PostConstruct
+    void init() {
+        if (redisBridgeEnabled) {
+            listenerContainer.addMessageListener(
+                    (message, pattern) -> onRedisMessage(new String(message.getBody(), StandardCharsets.UTF_8)),
+                    new ChannelTopic(CHANNEL));
+            log.info("交易事件 Redis 转发已开启，频道: {}", CHANNEL);
+        }
+    }
+
+    /**
+     * 建立 SSE 连接
+     * 超过单用户连接上限时关闭该用户最早的连接
+     * @throws IllegalStateException 本实例连接数已满
+     */
+    public SseEmitter subscribe(Long userId) {
+        if (connections.get() >= maxConnections) {
+            rejectedConnections.increment();
+            throw new IllegalStateException("Too many event stream connections");
+        }
+
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        emitter.onCompletion(() -> remove(userId, emitter));
+        emitter.onTimeout(() -> remove(userId, emitter));
+        emitter.onError(e -> remove(userId, emitter));
+
+        List<SseEmitter> emitters = subscribers.compute(userId, (id, list) -> {
+            List<SseEmitter> target = list != null ? list : new CopyOnWriteArrayList<>();
+            target.add(emitter);
+            return target;
+        });
+        connections.incrementAndGet();
+
+        while (emitters.size() > maxConnectionsPerUser) {
+            SseEmitter oldest = emitters.get(0);
+            if (remove(userId, oldest)) {
+                oldest.complete();
+            }
+        }
+
+        try {
+            emitter.send(SseEmitter.event()
+                    .name("ready")
+                    .reconnectTime(reconnectMs)
+                    .data("{}", MediaType.APPLICATION_JSON));
+        } catch (IOException e) {
+            remove(userId, emitter);
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    /**
+     * 交易变更后推送给该用户
+     * fallbackExecution：在事务外发布的事件（如异步解析流水线）也立即推送
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTransactionChanged(TransactionChangedEvent event) {
+        Long userId = event.userId();
+        if (userId == null) {
+            return;
+        }
+        boolean hasLocal = subscribers.containsKey(userId);
+        if (!hasLocal && !redisBridgeEnabled) {
+            return;
+        }
+
+        String name = event.changeType().name().toLowerCase();
+        String data;
+        try {
+            data = objectMapper.writeValueAsString(new EventPayload(name, event.transactionIds(), event.transaction()));
+        } catch (JsonProcessingException e) {
+            log.warn("交易事件序列化失败，用户: {}, 错误: {}", userId, e.getMessage());
+            return;
+        }
+        published.increment();
+
+        dispatch(() -> {
+            if (hasLocal) {
+                deliver(userId, name, data);
+            }
+            if (redisBridgeEnabled) {
+                publishToRedis(new RemoteEvent(nodeId, userId, name, data));
+            }
+        });
+    }
+
+    /**
+     * 定时发送注释行作为心跳，防止代理断开空闲连接，并及时清理已断开的连接
+     */
+    @Scheduled(fixedDelayString = "${easybill.events.heartbeat-ms:25000}")
+    public void heartbeat() {
+        if (connections.get() == 0) {
+            return;
+        }
+        dispatch(() -> subscribers.forEach((userId, emitters) -> {
+            for (SseEmitter emitter : emitters) {
+                try {
+                    emitter.send(SseEmitter.event().comment("ping"));
+                } catch (IOException | IllegalStateException e) {
+                    remove(userId, emitter);
+                }
+            }
+        }));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        subscribers.forEach((userId, emitters) -> emitters.forEach(SseEmitter::complete));
+        subscribers.clear();
+    }
+
+    private void onRedisMessage(String message) {
+        RemoteEvent event;
+        try {
+            event = objectMapper.readValue(message, RemoteEvent.class);
+        } catch (JsonProcessingException e) {
+            redisErrors.increment();
+            log.warn("无法解析 Redis 转发的交易事件: {}", e.getMessage());
+            return;
+        }
+        if (nodeId.equals(event.origin()) || !subscribers.containsKey(event.userId())) {
+            return;
+        }
+        redisReceived.increment();
+        dispatch(() -> deliver(event.userId(), event.name(), event.data()));
+    }
+
+    private void deliver(Long userId, String name, String data) {
+        List<SseEmitter> emitters = subscribers.get(userId);
+        if (emitters == null) {
+            return;
+        }
+        // 同一事件写给多个连接时复用已编码的内容
+        Set<DataWithMediaType> payload = SseEmitter.event()
+                .id(String.valueOf(sequence.incrementAndGet()))
+                .name(name)
+                .data(data, MediaType.APPLICATION_JSON)
+                .build();
+        for (SseEmitter emitter : emitters) {
+            try {
+                emitter.send(payload);
+                delivered.increment();
+            } catch (IOException | IllegalStateException e) {
+                sendFailures.increment();
+                remove(userId, emitter);
+            }
+        }
+    }
+
+    private void publishToRedis(RemoteEvent event) {
+        try {
+            redisTemplate.convertAndSend(CHANNEL, objectMapper.writeValueAsString(event));
+            redisPublished.increment();
+        } catch (Exception e) {
+            redisErrors.increment();
+            log.warn("交易事件转发到 Redis 失败，用户: {}, 错误: {}", event.userId(), e.getMessage());
+        }
+    }
+
+    private void dispatch(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (TaskRejectedException e) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * 移除连接
+     * @return 连接此前仍在列表中
+     */
+    private boolean remove(Long userId, SseEmitter emitter) {
+        AtomicBoolean removed = new AtomicBoolean();
+        subscribers.computeIfPresent(userId, (id, list) -> {
+            removed.set(list.remove(emitter));
+            return list.isEmpty() ? null : list;
+        });
+        if (removed.get()) {
+            connections.decrementAndGet();
+        }
+        return removed.get();
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "transaction-events";
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("connections", connections.get());
+        metrics.put("maxConnections", maxConnections);
+        metrics.put("users", subscribers.size());
+        metrics.put("published", published.sum());
+        metrics.put("delivered", delivered.sum());
+        metrics.put("dropped", dropped.sum());
+        metrics.put("sendFailures", sendFailures.sum());
+        metrics.put("rejectedConnections", rejectedConnections.sum());
+        metrics.put("queueDepth", executor.getThreadPoolExecutor().getQueue().size());
+        metrics.put("redisBridgeEnabled", redisBridgeEnabled);
+        metrics.put("redisPublished", redisPublished.sum());
+        metrics.put("redisReceived", redisReceived.sum());
+        metrics.put("redisErrors", redisErrors.sum());
+        return metrics;
+    }
+
+    /**
+     * 推送给前端的事件内容：type 为 created/updated/deleted/refresh
+     * 单条新增或修改时 transaction 为交易内容；批量修改只给出 ID，由前端按需重新获取
+     */
+    private record EventPayload(String type, List<Long> ids, TransactionDTO transaction) {
+    }
+
+    /**
+     * 经 Redis 转发的事件，data 为已序列化的 EventPayload
+     */
+    private record RemoteEvent(String origin, Long userId, String name, String data) {
+    }
+}
@@ -0,0 +1,148 @@
+package com.easybill.service;
+
+import com.easybill.entity.Transaction;
+import com.easybill.entity.TransactionStatus;
+import com.easybill.entity.TransactionType;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Root;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * 交易导出（CSV）
+ * 通过只进游标逐行读取（MySQL 需开启 useCursorFetch），边读边写入响应流，
+ * 并定期清空持久化上下文，内存占用与导出行数无关
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TransactionExportService {
+
+    private static final String[] HEADER = {"ID", "交易时间", "类型", "金额", "商户", "分类", "账户", "状态", "备注"};
+
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    // 每处理多少行清空一次持久化上下文
+    private static final int CLEAR_INTERVAL = 500;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final TransactionService transactionService;
+
+    @Value("${easybill.export.fetch-size:500}")
+    private int fetchSize;
+
+    /**
+     * 按筛选条件导出交易到输出流（按交易时间升序）
+     * @return 导出的行数
+     */
+    @Transactional(readOnly = true)
+    public long exportCsv(
+            Long userId,
+            TransactionType type,
+            TransactionStatus status,
+            Long categoryId,
+            Long accountId,
+            LocalDateTime startDate,
+            LocalDateTime endDate,
+            OutputStream outputStream
+    ) throws IOException {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Transaction> query = cb.createQuery(Transaction.class);
+        Root<Transaction> root = query.from(Transaction.class);
+        root.fetch("category", JoinType.LEFT);
+        root.fetch("account", JoinType.LEFT);
+        query.where(transactionService
+                .buildSpecification(userId, type, status, categoryId, accountId, startDate, endDate)
+                .toPredicate(root, query, cb));
+        query.orderBy(cb.asc(root.get("transactionTime")), cb.asc(root.get("id")));
+
+        TypedQuery<Transaction> typedQuery = entityManager.createQuery(query)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true);
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        // BOM：Excel 按 UTF-8 打开，中文不乱码
+        writer.write('\uFEFF');
+        writeRow(writer, HEADER);
+
+        long count = 0;
+        try (Stream<Transaction> rows = typedQuery.getResultStream()) {
+            Iterator<Transaction> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                Transaction transaction = iterator.next();
+                writeRow(writer, new String[]{
+                        String.valueOf(transaction.getId()),
+                        transaction.getTransactionTime() != null ? transaction.getTransactionTime().format(TIME_FORMATTER) : "",
+                        transaction.getType() == TransactionType.INCOME ? "收入" : "支出",
+                        transaction.getAmount() != null ? transaction.getAmount().toPlainString() : "",
+                        transaction.getMerchant(),
+                        transaction.getCategory() != null ? transaction.getCategory().getName() : "",
+                        transaction.getAccount() != null ? transaction.getAccount().getAccountName() : "",
+                        transaction.getStatus() != null ? transaction.getStatus().name() : "",
+                        transaction.getRemark()
+                });
+
+                if (++count % CLEAR_INTERVAL == 0) {
+                    entityManager.clear();
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        writer.flush();
+        log.info("交易导出完成，用户: {}, 行数: {}", userId, count);
+        return count;
+    }
+
+    private void writeRow(Writer writer, String[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(escape(values[i]));
+        }
+        writer.write("\r\n");
+    }
+
+    /**
+     * CSV 转义；以 = + - @ 开头的文本加前缀单引号，防止在表格软件中被当作公式执行
+     */
+    private String escape(String value) {
+        if (value == null || value.isEmpty()) {
+            return "";
+        }
+        String text = value;
+        char first = text.charAt(0);
+        if (first == '=' || first == '+' || first == '-' || first == '@') {
+            text = "'" + text;
+        }
+        if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+            return '"' + text.replace("\"", "\"\"") + '"';
+        }
+        return text;
+    }
+}
@@ -1,13 +1,18 @@
 package com.easybill.service;
 
+import com.easybill.dto.CursorPageResponse;
 import com.easybill.dto.PageResponse;
 import com.easybill.dto.TransactionDTO;
 import com.easybill.dto.TransactionUpdateRequest;
 import com.easybill.entity.*;
+import com.easybill.event.TransactionChangedEvent;
 import com.easybill.repository.AccountRepository;
 import com.easybill.repository.CategoryRepository;
+import com.easybill.repository.StatsRollupRepository.BucketKey;
+import com.easybill.repository.StatsRollupRepository.BucketValue;
 import com.easybill.repository.TransactionRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -17,22 +22,34 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import jakarta.persistence.criteria.Predicate;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class TransactionService {
 
+    // 批量操作单次最多处理的交易数
+    private static final int MAX_BATCH_SIZE = 1000;
+
     private final TransactionRepository transactionRepository;
     private final CategoryRepository categoryRepository;
     private final AccountRepository accountRepository;
+    private final StatsRollupService statsRollupService;
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      * 获取交易列表（支持筛选、排序、分页）
+     * 只读事务：查询结果不做脏检查快照
      */
+    @Transactional(readOnly = true)
     public PageResponse<TransactionDTO> getTransactions(
             Long userId,
             TransactionType type,
@@ -46,43 +63,8 @@ public class TransactionService {
             String sortBy,
             String sortDirection
     ) {
-        // 构建查询条件
-        Specification<Transaction> spec = (root, query, cb) -> {
-            List<Predicate> predicates = new ArrayList<>();
-            
-            // 用户ID必须匹配
-            predicates.add(cb.equal(root.get("user").get("id"), userId));
-            
-            // 类型筛选
-            if (type != null) {
-                predicates.add(cb.equal(root.get("type"), type));
-            }
-            
-            // 状态筛选
-            if (status != null) {
-                predicates.add(cb.equal(root.get("status"), status));
-            }
-            
-            // 分类筛选
-            if (categoryId != null) {
-                predicates.add(cb.equal(root.get("category").get("id"), categoryId));
-            }
-            
-            // 账户筛选
-            if (accountId != null) {
-                predicates.add(cb.equal(root.get("account").get("id"), accountId));
-            }
-            
-            // 日期范围筛选
-            if (startDate != null) {
-                predicates.add(cb.greaterThanOrEqualTo(root.get("transactionTime"), startDate));
-            }
-            if (endDate != null) {
-                predicates.add(cb.lessThanOrEqualTo(root.get("transactionTime"), endDate));
-            }
-            
-            return cb.and(predicates.toArray(new Predicate[0]));
-        };
+        Specification<Transaction> spec = buildSpecification(
+                userId, type, status, categoryId, accountId, startDate, endDate);
         
         // 构建排序
         Sort sort = Sort.by(
@@ -109,11 +91,77 @@ public class TransactionService {
                 .build();
     }
 
+    /**
+     * 按游标获取交易列表（keyset 分页）
+     * 按 (transactionTime, id) 定位下一页，不使用 OFFSET，也不执行 COUNT 查询，
+     * 翻页耗时与页码无关，适合无限滚动
+     * @param cursor 上一页返回的 nextCursor，首页传 null
+     * @throws IllegalArgumentException 游标无效或与排序方向不一致
+     */
+    @Transactional(readOnly = true)
+    public CursorPageResponse<TransactionDTO> getTransactionsByCursor(
+            Long userId,
+            TransactionType type,
+            TransactionStatus status,
+            Long categoryId,
+            Long accountId,
+            LocalDateTime startDate,
+            LocalDateTime endDate,
+            String cursor,
+            int size,
+            String sortDirection
+    ) {
+        boolean desc = !"asc".equalsIgnoreCase(sortDirection);
+        Specification<Transaction> spec = buildSpecification(
+                userId, type, status, categoryId, accountId, startDate, endDate);
+        
+        if (cursor != null && !cursor.isBlank()) {
+            TransactionCursor position = TransactionCursor.decode(cursor);
+            if (position.desc() != desc) {
+                throw new IllegalArgumentException("游标与排序方向不一致");
+            }
+            spec = spec.and(seekAfter(position));
+        }
+        
+        Sort.Direction direction = desc ? Sort.Direction.DESC : Sort.Direction.ASC;
+        Sort sort = Sort.by(direction, "transactionTime").and(Sort.by(direction, "id"));
+        
+        // 多取一条判断是否还有下一页
+        // project 在 JPA 中作为 fetch graph，分类和账户随同一条 SQL 取回
+        List<Transaction> rows = transactionRepository.findBy(spec, query -> query
+                .sortBy(sort)
+                .project("category", "account")
+                .limit(size + 1)
+                .all());
+        boolean hasMore = rows.size() > size;
+        if (hasMore) {
+            rows = rows.subList(0, size);
+        }
+        
+        String nextCursor = null;
+        if (hasMore) {
+            Transaction lastRow = rows.get(rows.size() - 1);
+            nextCursor = new TransactionCursor(desc, lastRow.getTransactionTime(), lastRow.getId()).encode();
+        }
+        
+        List<TransactionDTO> dtos = rows.stream()
+                .map(this::convertToDTO)
+                .collect(Collectors.toList());
+        
+        return CursorPageResponse.<TransactionDTO>builder()
+                .content(dtos)
+                .size(size)
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .build();
+    }
+
     /**
      * 获取交易详情
      */
+    @Transactional(readOnly = true)
     public TransactionDTO getTransactionById(Long id, Long userId) {
-        Transaction transaction = transactionRepository.findById(id)
+        Transaction transaction = transactionRepository.findWithDetailsById(id)
                 .orElseThrow(() -> new RuntimeException("Transaction not found"));
         
         // 验证权限
@@ -129,7 +177,7 @@ public class TransactionService {
      */
     @Transactional
     public TransactionDTO updateTransaction(Long id, Long userId, TransactionUpdateRequest request) {
-        Transaction transaction = transactionRepository.findById(id)
+        Transaction transaction = transactionRepository.findWithDetailsById(id)
                 .orElseThrow(() -> new RuntimeException("Transaction not found"));
         
         // 验证权限
@@ -137,6 +185,8 @@ public class TransactionService {
             throw new RuntimeException("Unauthorized access");
         }
         
+        StatsRollupService.Snapshot before = statsRollupService.snapshot(transaction);
+        
         // 更新字段
         if (request.getType() != null) {
             transaction.setType(request.getType());
@@ -169,8 +219,11 @@ public class TransactionService {
         
         transaction.setUpdatedAt(LocalDateTime.now());
         Transaction saved = transactionRepository.save(transaction);
+        statsRollupService.recordChanged(before, statsRollupService.snapshot(saved));
+        TransactionDTO dto = convertToDTO(saved);
+        eventPublisher.publishEvent(TransactionChangedEvent.updated(userId, dto));
         
-        return convertToDTO(saved);
+        return dto;
     }
 
     /**
@@ -187,32 +240,201 @@ public class TransactionService {
         }
         
         transactionRepository.delete(transaction);
+        statsRollupService.recordDeleted(statsRollupService.snapshot(transaction));
+        eventPublisher.publishEvent(TransactionChangedEvent.deleted(userId, List.of(id)));
+    }
+
+    /**
+     * 批量确认交易：一条 UPDATE 完成，不属于该用户的 ID 被忽略
+     * @return 实际更新的条数
+     */
+    @Transactional
+    public int batchConfirmTransactions(List<Long> ids, Long userId) {
+        List<Long> targetIds = checkBatchIds(ids);
+        int updated = transactionRepository.updateStatusByUserIdAndIdIn(
+                userId, targetIds, TransactionStatus.CONFIRMED, LocalDateTime.now());
+        
+        // 只改状态，不影响统计汇总
+        if (updated > 0) {
+            eventPublisher.publishEvent(TransactionChangedEvent.updated(userId, targetIds));
+        }
+        return updated;
+    }
+
+    /**
+     * 批量修改分类（categoryId 为空时清除分类）
+     * @return 实际更新的条数
+     */
+    @Transactional
+    public int batchUpdateCategory(List<Long> ids, Long categoryId, Long userId) {
+        List<Long> targetIds = checkBatchIds(ids);
+        Category category = null;
+        if (categoryId != null) {
+            category = categoryRepository.findById(categoryId)
+                    .filter(c -> c.getUserId() == null || c.getUserId().equals(userId))
+                    .orElseThrow(() -> new IllegalArgumentException("Category not found"));
+        }
+        
+        Map<BucketKey, BucketValue> buckets = statsRollupService.bucketsOf(userId, targetIds);
+        int updated = transactionRepository.updateCategoryByUserIdAndIdIn(userId, targetIds, category, LocalDateTime.now());
+        if (updated > 0) {
+            statsRollupService.recordBulkRecategorized(userId, buckets, categoryId);
+            eventPublisher.publishEvent(TransactionChangedEvent.updated(userId, targetIds));
+        }
+        return updated;
     }
 
     /**
-     * 批量确认交易
+     * 批量修改账户（accountId 为空时清除账户）
+     * @return 实际更新的条数
      */
     @Transactional
-    public void batchConfirmTransactions(List<Long> ids, Long userId) {
-        List<Transaction> transactions = transactionRepository.findAllById(ids);
+    public int batchUpdateAccount(List<Long> ids, Long accountId, Long userId) {
+        List<Long> targetIds = checkBatchIds(ids);
+        Account account = null;
+        if (accountId != null) {
+            account = accountRepository.findById(accountId)
+                    .filter(a -> a.getUserId().equals(userId))
+                    .orElseThrow(() -> new IllegalArgumentException("Account not found"));
+        }
         
-        for (Transaction transaction : transactions) {
-            // 验证权限
-            if (!transaction.getUser().getId().equals(userId)) {
-                throw new RuntimeException("Unauthorized access to transaction: " + transaction.getId());
+        // 账户不参与统计汇总
+        int updated = transactionRepository.updateAccountByUserIdAndIdIn(userId, targetIds, account, LocalDateTime.now());
+        if (updated > 0) {
+            eventPublisher.publishEvent(TransactionChangedEvent.updated(userId, targetIds));
+        }
+        return updated;
+    }
+
+    /**
+     * 批量删除交易
+     * @return 实际删除的条数
+     */
+    @Transactional
+    public int batchDeleteTransactions(List<Long> ids, Long userId) {
+        List<Long> targetIds = checkBatchIds(ids);
+        Map<BucketKey, BucketValue> buckets = statsRollupService.bucketsOf(userId, targetIds);
+        int deleted = transactionRepository.deleteByUserIdAndIdIn(userId, targetIds);
+        if (deleted > 0) {
+            statsRollupService.recordBulkDeleted(userId, buckets);
+            eventPublisher.publishEvent(TransactionChangedEvent.deleted(userId, targetIds));
+        }
+        return deleted;
+    }
+
+    private List<Long> checkBatchIds(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            throw new IllegalArgumentException("ids is empty");
+        }
+        List<Long> targetIds = ids.stream().filter(Objects::nonNull).distinct().toList();
+        if (targetIds.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Too many ids, max " + MAX_BATCH_SIZE);
+        }
+        return targetIds;
+    }
+
+    /**
+     * 构建交易筛选条件（列表、游标分页和导出共用）
+     */
+    Specification<Transaction> buildSpecification(
+            Long userId,
+            TransactionType type,
+            TransactionStatus status,
+            Long categoryId,
+            Long accountId,
+            LocalDateTime startDate,
+            LocalDateTime endDate
+    ) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            
+            // 用户ID必须匹配
+            predicates.add(cb.equal(root.get("user").get("id"), userId));
+            
+            // 类型筛选
+            if (type != null) {
+                predicates.add(cb.equal(root.get("type"), type));
             }
             
-            transaction.setStatus(TransactionStatus.CONFIRMED);
-            transaction.setUpdatedAt(LocalDateTime.now());
+            // 状态筛选
+            if (status != null) {
+                predicates.add(cb.equal(root.get("status"), status));
+            }
+            
+            // 分类筛选
+            if (categoryId != null) {
+                predicates.add(cb.equal(root.get("category").get("id"), categoryId));
+            }
+            
+            // 账户筛选
+            if (accountId != null) {
+                predicates.add(cb.equal(root.get("account").get("id"), accountId));
+            }
+            
+            // 日期范围筛选
+            if (startDate != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("transactionTime"), startDate));
+            }
+            if (endDate != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("transactionTime"), endDate));
+            }
+            
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    /**
+     * 游标位置之后的记录：降序时 (time, id) < 游标，升序时 (time, id) > 游标
+     */
+    private Specification<Transaction> seekAfter(TransactionCursor position) {
+        return (root, query, cb) -> {
+            if (position.desc()) {
+                return cb.or(
+                        cb.lessThan(root.get("transactionTime"), position.transactionTime()),
+                        cb.and(
+                                cb.equal(root.get("transactionTime"), position.transactionTime()),
+                                cb.lessThan(root.get("id"), position.id())
+                        )
+                );
+            }
+            return cb.or(
+                    cb.greaterThan(root.get("transactionTime"), position.transactionTime()),
+                    cb.and(
+                            cb.equal(root.get("transactionTime"), position.transactionTime()),
+                            cb.greaterThan(root.get("id"), position.id())
+                    )
+            );
+        };
+    }
+
+    /**
+     * 分页游标，对外以 Base64 编码的不透明字符串传递
+     */
+    private record TransactionCursor(boolean desc, LocalDateTime transactionTime, Long id) {
+
+        String encode() {
+            String raw = (desc ? "d" : "a") + "|" + transactionTime + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static TransactionCursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                String[] parts = raw.split("\\|");
+                if (parts.length != 3 || !(parts[0].equals("d") || parts[0].equals("a"))) {
+                    throw new IllegalArgumentException("无效的分页游标");
+                }
+                return new TransactionCursor(parts[0].equals("d"), LocalDateTime.parse(parts[1]), Long.valueOf(parts[2]));
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                throw new IllegalArgumentException("无效的分页游标", e);
+            }
         }
-        
-        transactionRepository.saveAll(transactions);
     }
 
     /**
      * 转换为 DTO
      */
-    private TransactionDTO convertToDTO(Transaction transaction) {
+    TransactionDTO convertToDTO(Transaction transaction) {
         return TransactionDTO.builder()
                 .id(transaction.getId())
                 .type(transaction.getType())
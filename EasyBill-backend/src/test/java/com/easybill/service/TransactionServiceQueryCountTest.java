@@ -0,0 +1,143 @@
+package com.easybill.service;
+
+import com.easybill.dto.CursorPageResponse;
+import com.easybill.dto.PageResponse;
+import com.easybill.dto.TransactionDTO;
+import com.easybill.entity.Account;
+import com.easybill.entity.Category;
+import com.easybill.entity.Transaction;
+import com.easybill.entity.TransactionStatus;
+import com.easybill.entity.TransactionType;
+import com.easybill.entity.User;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 交易列表和详情的 SQL 条数回归测试
+ * 分类和账户须随交易在同一条 SQL 中取回，转换 DTO 时不再逐行懒加载（N+1）
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import(TransactionService.class)
+class TransactionServiceQueryCountTest {
+
+    private static final int PAGE_SIZE = 50;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockitoBean
+    private StatsRollupService statsRollupService;
+
+    private Statistics statistics;
+    private Long userId;
+    private Long firstTransactionId;
+
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setUsername("query-count");
+        user.setPasswordHash("hash");
+        user.setApiKey("query-count-api-key");
+        entityManager.persist(user);
+        userId = user.getId();
+
+        List<Category> categories = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Category category = new Category();
+            category.setName("分类" + i);
+            category.setType("EXPENSE");
+            categories.add(entityManager.persist(category));
+        }
+
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Account account = new Account();
+            account.setUserId(userId);
+            account.setAccountName("账户" + i);
+            account.setAccountType("BANK_CARD");
+            accounts.add(entityManager.persist(account));
+        }
+
+        // 每行的分类和账户各不相同，懒加载时每个代理都会单独查询
+        LocalDateTime base = LocalDateTime.of(2024, 10, 15, 12, 0);
+        for (int i = 0; i < PAGE_SIZE + 10; i++) {
+            Transaction transaction = new Transaction();
+            transaction.setUser(user);
+            transaction.setCategory(categories.get(i % categories.size()));
+            transaction.setAccount(accounts.get(i % accounts.size()));
+            transaction.setType(TransactionType.EXPENSE);
+            transaction.setAmount(new BigDecimal("12.50"));
+            transaction.setMerchant("商户" + i);
+            transaction.setTransactionTime(base.minusMinutes(i));
+            transaction.setStatus(TransactionStatus.CONFIRMED);
+            entityManager.persist(transaction);
+            if (firstTransactionId == null) {
+                firstTransactionId = transaction.getId();
+            }
+        }
+
+        // 清空一级缓存，保证查询都发往数据库
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void offsetPageUsesOneSelectPlusCount() {
+        PageResponse<TransactionDTO> page = transactionService.getTransactions(
+                userId, null, null, null, null, null, null, 0, PAGE_SIZE, "transactionTime", "desc");
+
+        assertThat(page.getContent()).hasSize(PAGE_SIZE);
+        assertThat(page.getContent()).allSatisfy(dto -> {
+            assertThat(dto.getCategoryName()).isNotNull();
+            assertThat(dto.getAccountName()).isNotNull();
+        });
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    void cursorPageUsesOneSelect() {
+        CursorPageResponse<TransactionDTO> page = transactionService.getTransactionsByCursor(
+                userId, null, null, null, null, null, null, null, PAGE_SIZE, "desc");
+
+        assertThat(page.getContent()).hasSize(PAGE_SIZE);
+        assertThat(page.isHasMore()).isTrue();
+        assertThat(page.getContent()).allSatisfy(dto -> {
+            assertThat(dto.getCategoryName()).isNotNull();
+            assertThat(dto.getAccountName()).isNotNull();
+        });
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void detailUsesOneSelect() {
+        TransactionDTO dto = transactionService.getTransactionById(firstTransactionId, userId);
+
+        assertThat(dto.getCategoryName()).isNotNull();
+        assertThat(dto.getAccountName()).isNotNull();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+}
@@ -92,7 +92,8 @@ CREATE TABLE transactions (
     INDEX idx_transaction_time (transaction_time),
     INDEX idx_status (status),
     INDEX idx_type (type),
-    INDEX idx_idempotency_key (idempotency_key)
+    INDEX idx_idempotency_key (idempotency_key),
+    INDEX idx_user_time_id (user_id, transaction_time, id)
 ) ENGINE=InnoDB COMMENT='交易表';
 
 -- ============================================
@@ -105,13 +106,16 @@ CREATE TABLE raw_sms_logs (
     full_content TEXT NOT NULL COMMENT '短信全文',
     ai_response TEXT COMMENT 'AI 解析结果 JSON',
     device_info VARCHAR(50) COMMENT '设备标识',
-    parse_status VARCHAR(20) DEFAULT 'PENDING' COMMENT '解析状态: PENDING/SUCCESS/FAILED',
+    parse_status VARCHAR(20) DEFAULT 'PENDING' COMMENT '解析状态: PENDING/PROCESSING/SUCCESS/FAILED/ERROR/DUPLICATE/DEFERRED',
     error_message TEXT COMMENT '错误信息',
+    retry_count INT DEFAULT 0 COMMENT '自动重试次数',
+    next_retry_at DATETIME COMMENT '下次允许重试的时间',
     created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
     FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
     INDEX idx_user_id (user_id),
     INDEX idx_sender (sender),
-    INDEX idx_created_at (created_at)
+    INDEX idx_created_at (created_at),
+    INDEX idx_parse_status_id (parse_status, id)
 ) ENGINE=InnoDB COMMENT='原始短信日志表';
 
 -- ============================================
@@ -140,6 +144,7 @@ CREATE TABLE prompt_templates (
     template_name VARCHAR(100) NOT NULL COMMENT '模板名称',
     template_content TEXT NOT NULL COMMENT 'Prompt 模板内容',
     example_sms TEXT COMMENT '示例短信',
+    parse_pattern TEXT COMMENT '快速解析正则（命名分组: amount/merchant/card/direction/month/day/time）',
     is_default TINYINT DEFAULT 0 COMMENT '是否默认模板',
     created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
     updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
@@ -147,7 +152,30 @@ CREATE TABLE prompt_templates (
 ) ENGINE=InnoDB COMMENT='Prompt 模板表';
 
 -- ============================================
--- 9. 预置数据：系统分类
+-- 9. 统计日汇总表
+-- ============================================
+CREATE TABLE stats_daily_rollups (
+    user_id BIGINT NOT NULL COMMENT '所属用户',
+    stat_date DATE NOT NULL COMMENT '交易日期',
+    category_id BIGINT NOT NULL DEFAULT 0 COMMENT '分类（0 表示未分类）',
+    type VARCHAR(10) NOT NULL COMMENT '类型: INCOME/EXPENSE',
+    total_amount DECIMAL(18,2) NOT NULL DEFAULT 0 COMMENT '金额合计',
+    transaction_count INT NOT NULL DEFAULT 0 COMMENT '交易笔数',
+    PRIMARY KEY (user_id, stat_date, category_id, type),
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+) ENGINE=InnoDB COMMENT='统计日汇总表（随交易增删改增量维护）';
+
+-- ============================================
+-- 10. 幂等键表
+-- ============================================
+CREATE TABLE idempotency_keys (
+    idempotency_key VARCHAR(64) PRIMARY KEY COMMENT '幂等键',
+    created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_created_at (created_at)
+) ENGINE=InnoDB COMMENT='幂等键表（数据库幂等性存储，按主键原子占用）';
+
+-- ============================================
+-- 11. 预置数据：系统分类
 -- ============================================
 
 -- 支出分类
@@ -204,11 +232,11 @@ INSERT INTO categories (user_id, parent_id, name, icon, type, is_system, sort_or
 (NULL, NULL, '其他收入', '💵', 'INCOME', 1, 99);
 
 -- ============================================
--- 10. 预置数据：Prompt 模板
+-- 12. 预置数据：Prompt 模板
 -- ============================================
 
 -- 招商银行模板
-INSERT INTO prompt_templates (bank_type, template_name, template_content, example_sms, is_default) VALUES
+INSERT INTO prompt_templates (bank_type, template_name, template_content, example_sms, parse_pattern, is_default) VALUES
 ('CMB', '招商银行信用卡', 
 '你是一个专业的银行短信解析助手。请从以下招商银行短信中提取交易信息，返回 JSON 格式：
 {
@@ -227,10 +255,11 @@ INSERT INTO prompt_templates (bank_type, template_name, template_content, exampl
 4. 商户名称尽量完整提取
 5. 如果无法提取某个字段，返回 null',
 '【招商银行】您尾号1234的信用卡于12月25日12:30在全家便利店消费25.00元',
+'【招商银行】您尾号(?<card>\\d{4})的信用卡于(?<month>\\d{1,2})月(?<day>\\d{1,2})日(?<time>\\d{1,2}:\\d{2})在(?<merchant>.+?)(?<direction>消费|退款)(?<amount>[\\d,]+(?:\\.\\d{1,2})?)元',
 1);
 
 -- 工商银行模板
-INSERT INTO prompt_templates (bank_type, template_name, template_content, example_sms, is_default) VALUES
+INSERT INTO prompt_templates (bank_type, template_name, template_content, example_sms, parse_pattern, is_default) VALUES
 ('ICBC', '工商银行借记卡',
 '你是一个专业的银行短信解析助手。请从以下工商银行短信中提取交易信息，返回 JSON 格式：
 {
@@ -244,10 +273,11 @@ INSERT INTO prompt_templates (bank_type, template_name, template_content, exampl
 
 注意：工商银行短信格式为"您尾号XXXX的账户于XX月XX日XX:XX支出/收入XX元"',
 '【工商银行】您尾号5678的账户于12月25日14:20支出128.50元',
+'【工商银行】您尾号(?<card>\\d{4})的账户于(?<month>\\d{1,2})月(?<day>\\d{1,2})日(?<time>\\d{1,2}:\\d{2})(?<direction>支出|收入)(?<amount>[\\d,]+(?:\\.\\d{1,2})?)元',
 0);
 
 -- 支付宝模板
-INSERT INTO prompt_templates (bank_type, template_name, template_content, example_sms, is_default) VALUES
+INSERT INTO prompt_templates (bank_type, template_name, template_content, example_sms, parse_pattern, is_default) VALUES
 ('ALIPAY', '支付宝',
 '你是一个专业的支付宝短信解析助手。请从以下支付宝短信中提取交易信息，返回 JSON 格式：
 {
@@ -262,6 +292,7 @@ INSERT INTO prompt_templates (bank_type, template_name, template_content, exampl
 1. 支付宝短信通常包含"支付成功"、"收款"等关键词
 2. 商户名称可能在"向XX付款"或"在XX消费"中',
 '【支付宝】您在星巴克支付成功，金额45.00元',
+'【支付宝】您在(?<merchant>.+?)支付成功，金额(?<amount>[\\d,]+(?:\\.\\d{1,2})?)元',
 0);
 
 -- 默认通用模板
@@ -282,7 +313,7 @@ NULL,
 1);
 
 -- ============================================
--- 11. 创建测试用户（可选）
+-- 13. 创建测试用户（可选）
 -- ============================================
 -- 密码：admin123（BCrypt 加密后）
 INSERT INTO users (username, email, phone, password_hash, api_key) VALUES
@@ -296,6 +327,14 @@ INSERT INTO accounts (user_id, account_name, account_type, last_four_digits) VAL
 (1, '支付宝余额', 'ALIPAY', NULL),
 (1, '微信余额', 'WECHAT', NULL);
 
+-- 为测试用户配置短信来源（关联快速解析规则）
+INSERT INTO sms_sources (user_id, sender_number, bank_name, prompt_template_id)
+SELECT 1, '95555', '招商银行', id FROM prompt_templates WHERE bank_type = 'CMB';
+INSERT INTO sms_sources (user_id, sender_number, bank_name, prompt_template_id)
+SELECT 1, '95588', '工商银行', id FROM prompt_templates WHERE bank_type = 'ICBC';
+INSERT INTO sms_sources (user_id, sender_number, bank_name, prompt_template_id)
+SELECT 1, '95188', '支付宝', id FROM prompt_templates WHERE bank_type = 'ALIPAY';
+
 -- ============================================
 -- 完成
 -- ============================================